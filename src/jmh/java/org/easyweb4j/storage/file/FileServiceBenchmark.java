@@ -0,0 +1,122 @@
+package org.easyweb4j.storage.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 文件服务的写入和读取基准，覆盖1KB到1GB的文件，分别在tmpfs和磁盘上运行
+ * <p>
+ * 并发线程数由构建参数jmhThreads指定。写入基准每次写入后删除刚写入的文件，磁盘占用不随运行时间增长。
+ * tmpfs和磁盘目录可通过系统属性gn00.jmh.tmpfs和gn00.jmh.disk指定
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+@State(Scope.Benchmark)
+public class FileServiceBenchmark {
+
+  @Param({"1024", "65536", "1048576", "67108864", "1073741824"})
+  public int payloadSize;
+
+  @Param({"tmpfs", "disk"})
+  public String storage;
+
+  private Path prefix;
+  private AbstractFileService fileService;
+  private ByteBuffer content;
+  private Path storedPath;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    Path root = "tmpfs".equals(storage)
+      ? Paths.get(System.getProperty("gn00.jmh.tmpfs", "/dev/shm/gn00-jmh"))
+      : Paths.get(System.getProperty("gn00.jmh.disk", "build/jmh-disk")).toAbsolutePath();
+    prefix = root.resolve(Long.toString(System.nanoTime()));
+    fileService = new AbstractFileService() {
+      @Override
+      protected Path prefix() {
+        return prefix;
+      }
+    };
+
+    // 所有线程共享同一份只读内容，写入时只复制视图
+    byte[] chunk = new byte[64 * 1024];
+    ThreadLocalRandom.current().nextBytes(chunk);
+    content = ByteBuffer.allocateDirect(payloadSize);
+    while (content.hasRemaining()) {
+      content.put(chunk, 0, Math.min(chunk.length, content.remaining()));
+    }
+    content.flip();
+    storedPath = fileService.storeFileUsingHash(content.duplicate(), null, "bin");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(prefix)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public Path storeUsingDate() throws IOException {
+    Path path = fileService.storeFileUsingDate(content.duplicate(), null, "bin");
+    fileService.delete(path);
+    return path;
+  }
+
+  @Benchmark
+  public Path storeUsingHash() throws IOException {
+    Path path = fileService.storeFileUsingHash(content.duplicate(), null, "bin");
+    fileService.delete(path);
+    return path;
+  }
+
+  /**
+   * 完整读取后按long求和，4MB以上为内存映射，求和才触发缺页读取，计入耗时
+   */
+  @Benchmark
+  public void read(Blackhole blackhole) throws IOException {
+    ByteBuffer content = fileService.read(storedPath);
+    long sum = 0;
+    while (Long.BYTES <= content.remaining()) {
+      sum += content.getLong();
+    }
+    while (content.hasRemaining()) {
+      sum += content.get();
+    }
+    blackhole.consume(sum);
+  }
+
+  /**
+   * 随机位置读取64KB到调用方的直接缓冲
+   */
+  @Benchmark
+  public int readRange(RangeBuffer rangeBuffer) throws IOException {
+    ByteBuffer dst = rangeBuffer.buffer;
+    dst.clear();
+    long offset = payloadSize > dst.capacity()
+      ? ThreadLocalRandom.current().nextLong(payloadSize - dst.capacity()) : 0;
+    return fileService.read(storedPath, offset, dst);
+  }
+
+  @State(Scope.Thread)
+  public static class RangeBuffer {
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+  }
+}
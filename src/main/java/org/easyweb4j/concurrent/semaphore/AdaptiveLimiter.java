@@ -0,0 +1,65 @@
+package org.easyweb4j.concurrent.semaphore;
+
+/**
+ * 自适应并发限制器，根据请求的延迟和结果动态调整并发上限
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public interface AdaptiveLimiter {
+
+  /**
+   * 请求结果
+   */
+  enum Outcome {
+    /**
+     * 成功，延迟样本有效
+     */
+    SUCCESS,
+    /**
+     * 被下游拒绝或超时，视为拥塞信号
+     */
+    DROPPED,
+    /**
+     * 与容量无关的失败，不参与调整
+     */
+    IGNORED
+  }
+
+  /**
+   * 阻塞式获取，直至并发数低于当前上限
+   *
+   * @throws InterruptedException
+   */
+  void acquire() throws InterruptedException;
+
+  /**
+   * 尝试获取，非阻塞
+   *
+   * @return true成功获取，false获取失败
+   */
+  boolean tryAcquire();
+
+  /**
+   * 释放并上报请求结果
+   *
+   * @param outcome      请求结果
+   * @param latencyNanos 请求耗时，纳秒
+   */
+  void release(Outcome outcome, long latencyNanos);
+
+  /**
+   * 当前并发上限
+   *
+   * @return 并发上限
+   */
+  int limit();
+
+  /**
+   * 当前正在执行的数量
+   *
+   * @return 并发数
+   */
+  int inflight();
+}
@@ -0,0 +1,31 @@
+package org.easyweb4j.concurrent.semaphore;
+
+import org.easyweb4j.concurrent.semaphore.AdaptiveLimiter.Outcome;
+
+/**
+ * 并发上限调整算法，由限制器在锁内调用，实现无需线程安全
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public interface LimitAlgorithm {
+
+  /**
+   * 初始并发上限
+   *
+   * @return 并发上限
+   */
+  int initialLimit();
+
+  /**
+   * 根据样本计算新的并发上限
+   *
+   * @param limit        当前并发上限
+   * @param inflight     释放前的并发数
+   * @param outcome      请求结果
+   * @param latencyNanos 请求耗时，纳秒
+   * @return 新的并发上限
+   */
+  int update(int limit, int inflight, Outcome outcome, long latencyNanos);
+}
@@ -0,0 +1,56 @@
+package org.easyweb4j.concurrent.semaphore;
+
+import java.time.ZoneId;
+
+/**
+ * 速率信号量使用的时钟，单调时钟用于计时，墙上时钟和时区仅用于计算自然日历周期的边界
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public interface RateClock {
+
+  /**
+   * 系统时钟，时区在创建时确定
+   */
+  RateClock SYSTEM = new RateClock() {
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    @Override
+    public long nanoTime() {
+      return System.nanoTime();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+      return System.currentTimeMillis();
+    }
+
+    @Override
+    public ZoneId zone() {
+      return zone;
+    }
+  };
+
+  /**
+   * 单调时钟，只用于计算时间差
+   *
+   * @return 纳秒
+   */
+  long nanoTime();
+
+  /**
+   * 墙上时钟
+   *
+   * @return epoch毫秒
+   */
+  long currentTimeMillis();
+
+  /**
+   * 自然日历周期使用的时区
+   *
+   * @return 时区
+   */
+  ZoneId zone();
+}
@@ -34,4 +34,28 @@ public interface RateSemaphore extends AutoCloseable{
 
   boolean tryAcquire(int permits);
 
+  /**
+   * 预约信号量，非阻塞，立即占用当前或未来的配额
+   * <p>
+   * 默认不支持，内置的实现都已覆盖
+   *
+   * @param permits 预约数量
+   * @return 调用方执行前需要等待的纳秒数，0表示可立即执行
+   * @throws UnsupportedOperationException 实现不支持预约
+   */
+  default long reserve(int permits) {
+    throw new UnsupportedOperationException(getClass().getName() + " does not support reserve");
+  }
+
+  /**
+   * 统计快照
+   * <p>
+   * 默认不统计，返回{@link RateSemaphoreStats#EMPTY}
+   *
+   * @return 获取成功、失败次数，等待时间分布，当前周期使用率
+   */
+  default RateSemaphoreStats stats() {
+    return RateSemaphoreStats.EMPTY;
+  }
+
 }
@@ -0,0 +1,103 @@
+package org.easyweb4j.concurrent.semaphore;
+
+/**
+ * 速率信号量的统计快照
+ * <p>
+ * 等待时间直方图按微秒的2的幂分桶，第i个桶统计小于2^i微秒的等待，百分位取所在桶的上界
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public final class RateSemaphoreStats {
+
+  /**
+   * 没有统计的快照，所有计数为0
+   */
+  public static final RateSemaphoreStats EMPTY =
+    new RateSemaphoreStats(0, 0, 0, 0, 0, new long[0], 0);
+
+  private final long grantedCount;
+  private final long deniedCount;
+  private final long waitCount;
+  private final long totalWaitNanos;
+  private final long maxWaitNanos;
+  private final long[] waitHistogram;
+  private final double utilization;
+
+  public RateSemaphoreStats(long grantedCount, long deniedCount, long waitCount,
+    long totalWaitNanos, long maxWaitNanos, long[] waitHistogram, double utilization) {
+    this.grantedCount = grantedCount;
+    this.deniedCount = deniedCount;
+    this.waitCount = waitCount;
+    this.totalWaitNanos = totalWaitNanos;
+    this.maxWaitNanos = maxWaitNanos;
+    this.waitHistogram = waitHistogram.clone();
+    this.utilization = utilization;
+  }
+
+  /**
+   * 获取成功的次数，包含阻塞获取和预约
+   */
+  public long grantedCount() {
+    return grantedCount;
+  }
+
+  /**
+   * 非阻塞获取失败的次数
+   */
+  public long deniedCount() {
+    return deniedCount;
+  }
+
+  /**
+   * 阻塞获取和预约的次数
+   */
+  public long waitCount() {
+    return waitCount;
+  }
+
+  public long meanWaitNanos() {
+    return 0 == waitCount ? 0 : totalWaitNanos / waitCount;
+  }
+
+  public long maxWaitNanos() {
+    return maxWaitNanos;
+  }
+
+  /**
+   * 等待时间百分位
+   *
+   * @param percentile 百分位，(0, 1]
+   * @return 纳秒，所在桶的上界
+   */
+  public long waitPercentileNanos(double percentile) {
+    long target = (long) Math.ceil(waitCount * percentile);
+    long count = 0;
+    for (int i = 0; i < waitHistogram.length; i++) {
+      count += waitHistogram[i];
+      if (0 < count && count >= target) {
+        return (1L << i) * 1000L;
+      }
+    }
+    return maxWaitNanos;
+  }
+
+  public long[] waitHistogram() {
+    return waitHistogram.clone();
+  }
+
+  /**
+   * 当前周期的使用率，[0, 1]
+   */
+  public double utilization() {
+    return utilization;
+  }
+
+  @Override
+  public String toString() {
+    return "RateSemaphoreStats{granted=" + grantedCount + ", denied=" + deniedCount
+      + ", waits=" + waitCount + ", meanWaitNanos=" + meanWaitNanos()
+      + ", maxWaitNanos=" + maxWaitNanos + ", utilization=" + utilization + "}";
+  }
+}
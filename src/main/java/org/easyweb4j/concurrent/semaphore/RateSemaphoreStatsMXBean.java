@@ -0,0 +1,27 @@
+package org.easyweb4j.concurrent.semaphore;
+
+/**
+ * 速率信号量的JMX统计
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public interface RateSemaphoreStatsMXBean {
+
+  long getGrantedCount();
+
+  long getDeniedCount();
+
+  long getWaitCount();
+
+  long getMeanWaitNanos();
+
+  long getMaxWaitNanos();
+
+  long getWaitP50Nanos();
+
+  long getWaitP99Nanos();
+
+  double getUtilization();
+}
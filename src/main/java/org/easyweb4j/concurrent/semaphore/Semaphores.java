@@ -1,8 +1,21 @@
 package org.easyweb4j.concurrent.semaphore;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Period;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.easyweb4j.concurrent.semaphore.impl.AimdLimitAlgorithm;
+import org.easyweb4j.concurrent.semaphore.impl.CompositeRateSemaphore;
+import org.easyweb4j.concurrent.semaphore.impl.DefaultAdaptiveLimiter;
+import org.easyweb4j.concurrent.semaphore.impl.GradientLimitAlgorithm;
+import org.easyweb4j.concurrent.semaphore.impl.PersistentTimeRateSemaphore;
+import org.easyweb4j.concurrent.semaphore.impl.SharedMemoryRateSemaphore;
+import org.easyweb4j.concurrent.semaphore.impl.SmoothRateSemaphore;
 import org.easyweb4j.concurrent.semaphore.impl.TimeRateSemaphore;
+import org.easyweb4j.concurrent.semaphore.impl.VegasLimitAlgorithm;
 
 /**
  * Semaphores factory
@@ -13,9 +26,75 @@ import org.easyweb4j.concurrent.semaphore.impl.TimeRateSemaphore;
  */
 public abstract class Semaphores {
 
+  private static class RateSemaphoreStatsMXBeanAdapter implements RateSemaphoreStatsMXBean {
+
+    private final RateSemaphore rateSemaphore;
+
+    RateSemaphoreStatsMXBeanAdapter(RateSemaphore rateSemaphore) {
+      this.rateSemaphore = rateSemaphore;
+    }
+
+    @Override
+    public long getGrantedCount() {
+      return rateSemaphore.stats().grantedCount();
+    }
+
+    @Override
+    public long getDeniedCount() {
+      return rateSemaphore.stats().deniedCount();
+    }
+
+    @Override
+    public long getWaitCount() {
+      return rateSemaphore.stats().waitCount();
+    }
+
+    @Override
+    public long getMeanWaitNanos() {
+      return rateSemaphore.stats().meanWaitNanos();
+    }
+
+    @Override
+    public long getMaxWaitNanos() {
+      return rateSemaphore.stats().maxWaitNanos();
+    }
+
+    @Override
+    public long getWaitP50Nanos() {
+      return rateSemaphore.stats().waitPercentileNanos(0.5);
+    }
+
+    @Override
+    public long getWaitP99Nanos() {
+      return rateSemaphore.stats().waitPercentileNanos(0.99);
+    }
+
+    @Override
+    public double getUtilization() {
+      return rateSemaphore.stats().utilization();
+    }
+  }
+
   private Semaphores() {
   }
 
+  /**
+   * 注册速率信号量的统计到平台MBeanServer
+   *
+   * @param name          名称，用于ObjectName的name属性
+   * @param rateSemaphore 信号量
+   * @return 注册的ObjectName，可用于注销
+   * @throws JMException
+   */
+  public static final ObjectName registerMBean(String name, RateSemaphore rateSemaphore)
+    throws JMException {
+    ObjectName objectName =
+      new ObjectName("org.easyweb4j:type=RateSemaphore,name=" + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer()
+      .registerMBean(new RateSemaphoreStatsMXBeanAdapter(rateSemaphore), objectName);
+    return objectName;
+  }
+
   public static final RateSemaphore newRateSemaphore(int permits) {
     return new TimeRateSemaphore(permits);
   }
@@ -27,4 +106,135 @@ public abstract class Semaphores {
   public static final RateSemaphore newRateSemaphorePeriod(int permits, String rateAmount) {
     return new TimeRateSemaphore(permits, Period.parse(rateAmount));
   }
+
+  /**
+   * 持久化的速率信号量，已使用数量保存在本地文件，重启后恢复
+   *
+   * @param permits    周期内数量
+   * @param rateAmount 周期，Duration格式，如PT1H
+   * @param stateFile  状态文件
+   * @return 信号量
+   * @throws IOException
+   */
+  public static final RateSemaphore newPersistentRateSemaphoreDuration(int permits,
+    String rateAmount, Path stateFile) throws IOException {
+    return new PersistentTimeRateSemaphore(permits, Duration.parse(rateAmount), stateFile);
+  }
+
+  /**
+   * 持久化的自然日历周期速率信号量，已使用数量保存在本地文件，重启后恢复
+   *
+   * @param permits    周期内数量
+   * @param rateAmount 周期，Period格式，如P1D，P1M
+   * @param stateFile  状态文件
+   * @return 信号量
+   * @throws IOException
+   */
+  public static final RateSemaphore newPersistentRateSemaphorePeriod(int permits,
+    String rateAmount, Path stateFile) throws IOException {
+    return new PersistentTimeRateSemaphore(permits, Period.parse(rateAmount), stateFile);
+  }
+
+  /**
+   * 跨进程共享的速率信号量，同一台机器上使用同一状态文件的进程共同遵守一个配额
+   *
+   * @param permits    周期内数量
+   * @param rateAmount 周期，Duration格式，如PT1S
+   * @param stateFile  共享状态文件
+   * @return 信号量
+   * @throws IOException
+   */
+  public static final RateSemaphore newSharedRateSemaphoreDuration(int permits,
+    String rateAmount, Path stateFile) throws IOException {
+    return new SharedMemoryRateSemaphore(permits, Duration.parse(rateAmount), stateFile);
+  }
+
+  /**
+   * 跨进程共享的自然日历周期速率信号量
+   *
+   * @param permits    周期内数量
+   * @param rateAmount 周期，Period格式，如P1D，P1M
+   * @param stateFile  共享状态文件
+   * @return 信号量
+   * @throws IOException
+   */
+  public static final RateSemaphore newSharedRateSemaphorePeriod(int permits,
+    String rateAmount, Path stateFile) throws IOException {
+    return new SharedMemoryRateSemaphore(permits, Period.parse(rateAmount), stateFile);
+  }
+
+  /**
+   * 平滑速率信号量，令牌在周期内均匀发放
+   *
+   * @param permits    每个周期的数量
+   * @param rateAmount 周期，Duration格式，如PT1S
+   * @return 信号量
+   */
+  public static final RateSemaphore newSmoothRateSemaphore(int permits, String rateAmount) {
+    return new SmoothRateSemaphore(permits, Duration.parse(rateAmount));
+  }
+
+  /**
+   * 带预热的平滑速率信号量，冷启动后在预热时间内逐步提速到稳定速率
+   *
+   * @param permits      每个周期的数量
+   * @param rateAmount   周期，Duration格式，如PT1S
+   * @param warmupPeriod 预热时间，Duration格式
+   * @return 信号量
+   */
+  public static final RateSemaphore newWarmingUpRateSemaphore(int permits, String rateAmount,
+    String warmupPeriod) {
+    return new SmoothRateSemaphore(permits, Duration.parse(rateAmount),
+      Duration.parse(warmupPeriod));
+  }
+
+  /**
+   * 多层级组合速率信号量，全部层获取成功才算成功，失败时回滚
+   *
+   * @param levels 各层信号量，从粗到细，如全局、租户、接口
+   * @return 组合信号量
+   */
+  public static final RateSemaphore newCompositeRateSemaphore(RateSemaphore... levels) {
+    return new CompositeRateSemaphore(levels);
+  }
+
+  /**
+   * AIMD自适应并发限制器
+   *
+   * @param initialLimit 初始并发上限
+   * @param minLimit     最小并发上限
+   * @param maxLimit     最大并发上限
+   * @return 限制器
+   */
+  public static final AdaptiveLimiter newAimdLimiter(int initialLimit, int minLimit,
+    int maxLimit) {
+    return new DefaultAdaptiveLimiter(new AimdLimitAlgorithm(initialLimit), minLimit, maxLimit);
+  }
+
+  /**
+   * Vegas自适应并发限制器，按延迟估计排队长度调整
+   *
+   * @param initialLimit 初始并发上限
+   * @param minLimit     最小并发上限
+   * @param maxLimit     最大并发上限
+   * @return 限制器
+   */
+  public static final AdaptiveLimiter newVegasLimiter(int initialLimit, int minLimit,
+    int maxLimit) {
+    return new DefaultAdaptiveLimiter(new VegasLimitAlgorithm(initialLimit), minLimit, maxLimit);
+  }
+
+  /**
+   * 梯度自适应并发限制器，按长短期延迟比值调整
+   *
+   * @param initialLimit 初始并发上限
+   * @param minLimit     最小并发上限
+   * @param maxLimit     最大并发上限
+   * @return 限制器
+   */
+  public static final AdaptiveLimiter newGradientLimiter(int initialLimit, int minLimit,
+    int maxLimit) {
+    return new DefaultAdaptiveLimiter(new GradientLimitAlgorithm(initialLimit), minLimit,
+      maxLimit);
+  }
 }
@@ -0,0 +1,57 @@
+package org.easyweb4j.concurrent.semaphore.impl;
+
+import java.util.concurrent.TimeUnit;
+import org.easyweb4j.concurrent.semaphore.AdaptiveLimiter.Outcome;
+import org.easyweb4j.concurrent.semaphore.LimitAlgorithm;
+
+/**
+ * 加性增乘性减算法，成功且并发接近上限时加1，失败或超时按比例回退
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class AimdLimitAlgorithm implements LimitAlgorithm {
+
+  private final int initialLimit;
+  private final double backoffRatio;
+  private final long timeoutNanos;
+
+  /**
+   * @param initialLimit 初始并发上限
+   * @param backoffRatio 回退比例，(0.5, 1)
+   * @param timeout      超过此耗时视为拥塞
+   * @param unit         时间单位
+   */
+  public AimdLimitAlgorithm(int initialLimit, double backoffRatio, long timeout, TimeUnit unit) {
+    if (0.5 > backoffRatio || 1.0 <= backoffRatio) {
+      throw new IllegalArgumentException("backoffRatio must be in [0.5, 1.0): " + backoffRatio);
+    }
+
+    this.initialLimit = initialLimit;
+    this.backoffRatio = backoffRatio;
+    this.timeoutNanos = unit.toNanos(timeout);
+  }
+
+  public AimdLimitAlgorithm(int initialLimit) {
+    this(initialLimit, 0.9, 5, TimeUnit.SECONDS);
+  }
+
+  @Override
+  public int initialLimit() {
+    return initialLimit;
+  }
+
+  @Override
+  public int update(int limit, int inflight, Outcome outcome, long latencyNanos) {
+    if (Outcome.DROPPED == outcome || latencyNanos > timeoutNanos) {
+      return (int) (limit * backoffRatio);
+    }
+
+    // 并发远低于上限时说明不是瓶颈，不继续增加
+    if (inflight * 2 >= limit) {
+      return limit + 1;
+    }
+    return limit;
+  }
+}
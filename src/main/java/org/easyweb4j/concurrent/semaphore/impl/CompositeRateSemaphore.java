@@ -0,0 +1,128 @@
+package org.easyweb4j.concurrent.semaphore.impl;
+
+import org.easyweb4j.concurrent.semaphore.RateSemaphore;
+import org.easyweb4j.concurrent.semaphore.RateSemaphoreStats;
+
+/**
+ * 多层级组合速率信号量，如全局+租户+接口，要么全部获取成功，要么全部回滚
+ * <p>
+ * 不持有任何锁：非阻塞获取按顺序尝试各层，失败时逆序归还已获取的层；阻塞获取只在单个瓶颈层上等待，
+ * 等待期间不占用其他层，因此不会死锁。各层可被多个组合共享，关闭组合不会关闭各层
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class CompositeRateSemaphore implements RateSemaphore {
+
+  private final RateSemaphore[] levels;
+  private final RateMetrics metrics = new RateMetrics();
+
+  /**
+   * @param levels 各层信号量，建议从粗到细排列，粒度越粗越先尝试
+   */
+  public CompositeRateSemaphore(RateSemaphore... levels) {
+    if (null == levels || 0 == levels.length) {
+      throw new IllegalArgumentException("levels must not be empty");
+    }
+    this.levels = levels.clone();
+  }
+
+  @Override
+  public void acquire() throws InterruptedException {
+    acquire(1);
+  }
+
+  @Override
+  public void acquire(int permits) throws InterruptedException {
+    long startNanos = System.nanoTime();
+    int failedLevel;
+    while (-1 != (failedLevel = tryAcquireAll(permits, -1))) {
+      // 只在瓶颈层阻塞，之后再尝试其余各层
+      levels[failedLevel].acquire(permits);
+      if (-1 == tryAcquireAll(permits, failedLevel)) {
+        break;
+      }
+
+      levels[failedLevel].release(permits);
+    }
+    metrics.recordWait(System.nanoTime() - startNanos);
+  }
+
+  @Override
+  public void release() {
+    release(1);
+  }
+
+  @Override
+  public void release(int permits) {
+    for (int i = levels.length - 1; i >= 0; i--) {
+      levels[i].release(permits);
+    }
+  }
+
+  @Override
+  public boolean tryAcquire() {
+    return tryAcquire(1);
+  }
+
+  @Override
+  public boolean tryAcquire(int permits) {
+    boolean granted = -1 == tryAcquireAll(permits, -1);
+    metrics.recordTryAcquire(granted);
+    return granted;
+  }
+
+  /**
+   * 在每一层预约，预约不可撤销，等待时间取各层最大值
+   */
+  @Override
+  public long reserve(int permits) {
+    long delay = 0;
+    for (RateSemaphore level : levels) {
+      delay = Math.max(delay, level.reserve(permits));
+    }
+    metrics.recordWait(delay);
+    return delay;
+  }
+
+  /**
+   * 使用率取各层中的最大值
+   */
+  @Override
+  public RateSemaphoreStats stats() {
+    double utilization = 0;
+    for (RateSemaphore level : levels) {
+      utilization = Math.max(utilization, level.stats().utilization());
+    }
+    return metrics.snapshot(utilization);
+  }
+
+  @Override
+  public void close() throws Exception {
+  }
+
+  /**
+   * 依次尝试获取各层，失败时逆序归还
+   *
+   * @param permits   数量
+   * @param heldLevel 已持有的层，跳过，-1表示无
+   * @return -1表示全部成功，否则为失败的层
+   */
+  private int tryAcquireAll(int permits, int heldLevel) {
+    for (int i = 0; i < levels.length; i++) {
+      if (i == heldLevel || levels[i].tryAcquire(permits)) {
+        continue;
+      }
+
+      for (int j = i - 1; j >= 0; j--) {
+        if (j != heldLevel) {
+          levels[j].release(permits);
+        }
+      }
+      return i;
+    }
+
+    return -1;
+  }
+}
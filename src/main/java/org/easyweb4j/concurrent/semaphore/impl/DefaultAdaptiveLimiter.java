@@ -0,0 +1,110 @@
+package org.easyweb4j.concurrent.semaphore.impl;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.easyweb4j.concurrent.semaphore.AdaptiveLimiter;
+import org.easyweb4j.concurrent.semaphore.LimitAlgorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 默认的自适应并发限制器，并发上限由{@link LimitAlgorithm}根据样本调整，并限制在[minLimit, maxLimit]内
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class DefaultAdaptiveLimiter implements AdaptiveLimiter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DefaultAdaptiveLimiter.class);
+
+  private final LimitAlgorithm algorithm;
+  private final int minLimit;
+  private final int maxLimit;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition belowLimitCondition = lock.newCondition();
+
+  private volatile int limit;
+  private volatile int inflight;
+
+  public DefaultAdaptiveLimiter(LimitAlgorithm algorithm, int minLimit, int maxLimit) {
+    if (1 > minLimit || minLimit > maxLimit) {
+      throw new IllegalArgumentException("illegal limit range: " + minLimit + "," + maxLimit);
+    }
+
+    this.algorithm = algorithm;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.limit = clamp(algorithm.initialLimit());
+  }
+
+  @Override
+  public void acquire() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (inflight >= limit) {
+        belowLimitCondition.await();
+      }
+      inflight++;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean tryAcquire() {
+    // 快速失败，避免无意义的加锁
+    if (inflight >= limit) {
+      return false;
+    }
+
+    lock.lock();
+    try {
+      if (inflight >= limit) {
+        return false;
+      }
+      inflight++;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void release(Outcome outcome, long latencyNanos) {
+    lock.lock();
+    try {
+      int oldLimit = limit;
+      if (Outcome.IGNORED != outcome) {
+        limit = clamp(algorithm.update(oldLimit, inflight, outcome, latencyNanos));
+        if (oldLimit != limit) {
+          LOGGER.debug("limit changed: {} -> {}", oldLimit, limit);
+        }
+      }
+
+      inflight--;
+      if (limit > oldLimit) {
+        belowLimitCondition.signalAll();
+      } else {
+        belowLimitCondition.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int limit() {
+    return limit;
+  }
+
+  @Override
+  public int inflight() {
+    return inflight;
+  }
+
+  private int clamp(int newLimit) {
+    return Math.max(minLimit, Math.min(maxLimit, newLimit));
+  }
+}
@@ -0,0 +1,76 @@
+package org.easyweb4j.concurrent.semaphore.impl;
+
+import org.easyweb4j.concurrent.semaphore.AdaptiveLimiter.Outcome;
+import org.easyweb4j.concurrent.semaphore.LimitAlgorithm;
+
+/**
+ * 梯度算法，比较长期平均延迟与当前延迟，延迟上升时按比例收缩，平稳时以sqrt(limit)为排队余量增长
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class GradientLimitAlgorithm implements LimitAlgorithm {
+
+  private final int initialLimit;
+  private final double smoothing;
+  private final double longWindowWeight;
+
+  private double estimatedLimit;
+  private double longRttNanos;
+
+  /**
+   * @param initialLimit 初始并发上限
+   * @param smoothing    新上限的平滑系数，(0, 1]
+   * @param longWindow   长期平均延迟的样本窗口
+   */
+  public GradientLimitAlgorithm(int initialLimit, double smoothing, int longWindow) {
+    if (0 >= smoothing || 1.0 < smoothing) {
+      throw new IllegalArgumentException("smoothing must be in (0, 1]: " + smoothing);
+    }
+
+    this.initialLimit = initialLimit;
+    this.smoothing = smoothing;
+    this.longWindowWeight = 2.0 / (longWindow + 1);
+    this.estimatedLimit = initialLimit;
+  }
+
+  public GradientLimitAlgorithm(int initialLimit) {
+    this(initialLimit, 0.2, 600);
+  }
+
+  @Override
+  public int initialLimit() {
+    return initialLimit;
+  }
+
+  @Override
+  public int update(int limit, int inflight, Outcome outcome, long latencyNanos) {
+    estimatedLimit = Math.max(limit, Math.min(estimatedLimit, limit + 1));
+
+    if (Outcome.DROPPED == outcome) {
+      estimatedLimit = Math.max(1.0, estimatedLimit * 0.9);
+      return (int) estimatedLimit;
+    }
+
+    if (0 >= latencyNanos) {
+      return (int) estimatedLimit;
+    }
+
+    if (0 == longRttNanos) {
+      longRttNanos = latencyNanos;
+    } else {
+      longRttNanos += (latencyNanos - longRttNanos) * longWindowWeight;
+    }
+
+    // 并发远低于上限时说明不是瓶颈
+    if (inflight * 2 < estimatedLimit) {
+      return (int) estimatedLimit;
+    }
+
+    double gradient = Math.max(0.5, Math.min(1.0, longRttNanos / latencyNanos));
+    double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+    estimatedLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+    return (int) Math.max(1.0, estimatedLimit);
+  }
+}
@@ -0,0 +1,171 @@
+package org.easyweb4j.concurrent.semaphore.impl;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.temporal.TemporalAmount;
+import org.easyweb4j.concurrent.semaphore.RateClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 持久化的时间速率信号量，周期内已使用数量记录在本地内存映射文件中，重启后恢复，适合日、月级别的配额
+ * <p>
+ * 记录以环形追加的方式写入，每条记录带序号和校验，恢复时取序号最大的有效记录。
+ * 记录的数量按批次向上取整提前写入，进程崩溃时最多浪费一个批次，不会超发；正常关闭时写入精确值
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class PersistentTimeRateSemaphore extends TimeRateSemaphore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PersistentTimeRateSemaphore.class);
+
+  private static final long MAGIC = 0x5253454d53544131L;
+  private static final int HEADER_SIZE = 16;
+  private static final int RECORD_SIZE = 32;
+  private static final int FILE_SIZE = 4096;
+  private static final int SLOTS = (FILE_SIZE - HEADER_SIZE) / RECORD_SIZE;
+
+  private final int batchSize;
+  private final FileChannel channel;
+  private final MappedByteBuffer mappedBuffer;
+
+  private long sequence;
+  private int nextSlot;
+  private long recordedWindowStartMillis = -1;
+  private long recordedPermits = -1;
+  private long currentWindowStartMillis;
+  private long currentUsedPermits;
+  private boolean closed;
+
+  /**
+   * @param maxPermits     最大允许量
+   * @param temporalAmount 周期
+   * @param stateFile      状态文件
+   * @param batchSize      批次大小，越大写入越少，崩溃时浪费越多
+   * @param clock          时钟
+   * @throws IOException
+   */
+  public PersistentTimeRateSemaphore(int maxPermits, TemporalAmount temporalAmount,
+    Path stateFile, int batchSize, RateClock clock) throws IOException {
+    super(maxPermits, temporalAmount, clock);
+    if (1 > batchSize) {
+      throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+    }
+
+    this.batchSize = batchSize;
+    this.channel = FileChannel.open(stateFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+      StandardOpenOption.WRITE);
+    this.mappedBuffer = channel.map(MapMode.READ_WRITE, 0, FILE_SIZE);
+
+    recover();
+  }
+
+  public PersistentTimeRateSemaphore(int maxPermits, TemporalAmount temporalAmount,
+    Path stateFile) throws IOException {
+    this(maxPermits, temporalAmount, stateFile, 16, RateClock.SYSTEM);
+  }
+
+  @Override
+  protected void onPermitsChanged(long windowStartMillis, long usedPermits) {
+    currentWindowStartMillis = windowStartMillis;
+    currentUsedPermits = usedPermits;
+
+    // 构造期间文件尚未打开，关闭后不再写入
+    if (null == mappedBuffer || closed) {
+      return;
+    }
+
+    if (windowStartMillis == recordedWindowStartMillis && usedPermits <= recordedPermits) {
+      return;
+    }
+
+    long ceilPermits =
+      Math.min(maxPermits(), (usedPermits + batchSize - 1) / batchSize * batchSize);
+    appendRecord(windowStartMillis, ceilPermits);
+  }
+
+  /**
+   * 持有父类的锁，与并发的获取互斥，写入精确值后不再记录
+   */
+  @Override
+  public void close() throws Exception {
+    lock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+
+      closed = true;
+      appendRecord(currentWindowStartMillis, currentUsedPermits);
+      mappedBuffer.force();
+      channel.close();
+    } finally {
+      lock().unlock();
+    }
+    super.close();
+  }
+
+  private void recover() {
+    if (MAGIC != mappedBuffer.getLong(0)) {
+      LOGGER.debug("init rate state file");
+      mappedBuffer.putLong(0, MAGIC);
+      mappedBuffer.putInt(8, RECORD_SIZE);
+      return;
+    }
+
+    long latestSeq = 0;
+    long windowStartMillis = 0;
+    long usedPermits = 0;
+    for (int slot = 0; slot < SLOTS; slot++) {
+      int offset = HEADER_SIZE + slot * RECORD_SIZE;
+      long seq = mappedBuffer.getLong(offset);
+      long start = mappedBuffer.getLong(offset + 8);
+      long used = mappedBuffer.getLong(offset + 16);
+      long check = mappedBuffer.getLong(offset + 24);
+      if (0 == seq || check != checksum(seq, start, used) || seq <= latestSeq) {
+        continue;
+      }
+
+      latestSeq = seq;
+      windowStartMillis = start;
+      usedPermits = used;
+      nextSlot = (slot + 1) % SLOTS;
+    }
+
+    sequence = latestSeq;
+    if (0 < latestSeq && restore(windowStartMillis, usedPermits)) {
+      LOGGER.debug("recover rate state: start={}, used={}", windowStartMillis, usedPermits);
+      // 恢复时切换周期写入的记录不含已使用数量，需重新写入
+      appendRecord(windowStartMillis, usedPermits);
+    }
+  }
+
+  private void appendRecord(long windowStartMillis, long permits) {
+    long seq = ++sequence;
+    int offset = HEADER_SIZE + nextSlot * RECORD_SIZE;
+    // 校验最后写入，崩溃时残缺记录会被忽略
+    mappedBuffer.putLong(offset + 24, 0);
+    mappedBuffer.putLong(offset, seq);
+    mappedBuffer.putLong(offset + 8, windowStartMillis);
+    mappedBuffer.putLong(offset + 16, permits);
+    mappedBuffer.putLong(offset + 24, checksum(seq, windowStartMillis, permits));
+
+    nextSlot = (nextSlot + 1) % SLOTS;
+    recordedWindowStartMillis = windowStartMillis;
+    recordedPermits = permits;
+  }
+
+  private static long checksum(long seq, long windowStartMillis, long permits) {
+    long h = MAGIC;
+    h = (h ^ seq) * 0x9E3779B97F4A7C15L;
+    h = (h ^ windowStartMillis) * 0x9E3779B97F4A7C15L;
+    h = (h ^ permits) * 0x9E3779B97F4A7C15L;
+    return h ^ (h >>> 31);
+  }
+}
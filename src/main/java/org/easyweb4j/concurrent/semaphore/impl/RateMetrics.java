@@ -0,0 +1,61 @@
+package org.easyweb4j.concurrent.semaphore.impl;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.easyweb4j.concurrent.semaphore.RateSemaphoreStats;
+
+/**
+ * 速率信号量的统计记录，基于分段计数器，记录时无锁
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+final class RateMetrics {
+
+  private static final int BUCKETS = 40;
+
+  private final LongAdder grantedCount = new LongAdder();
+  private final LongAdder deniedCount = new LongAdder();
+  private final LongAdder waitCount = new LongAdder();
+  private final LongAdder totalWaitNanos = new LongAdder();
+  private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+  private final LongAdder[] waitHistogram = new LongAdder[BUCKETS];
+
+  RateMetrics() {
+    for (int i = 0; i < BUCKETS; i++) {
+      waitHistogram[i] = new LongAdder();
+    }
+  }
+
+  void recordTryAcquire(boolean granted) {
+    if (granted) {
+      grantedCount.increment();
+    } else {
+      deniedCount.increment();
+    }
+  }
+
+  /**
+   * 记录阻塞获取或预约的等待时间
+   */
+  void recordWait(long waitNanos) {
+    grantedCount.increment();
+    waitCount.increment();
+    totalWaitNanos.add(waitNanos);
+    maxWaitNanos.accumulate(waitNanos);
+
+    int bucket = Long.SIZE - Long.numberOfLeadingZeros(waitNanos / 1000L);
+    waitHistogram[Math.min(bucket, BUCKETS - 1)].increment();
+  }
+
+  RateSemaphoreStats snapshot(double utilization) {
+    long[] histogram = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      histogram[i] = waitHistogram[i].sum();
+    }
+
+    return new RateSemaphoreStats(grantedCount.sum(), deniedCount.sum(), waitCount.sum(),
+      totalWaitNanos.sum(), maxWaitNanos.get(), histogram, Math.max(0, Math.min(1, utilization)));
+  }
+}
@@ -0,0 +1,130 @@
+package org.easyweb4j.concurrent.semaphore.impl;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.time.temporal.TemporalAmount;
+
+/**
+ * 周期边界计算
+ * <p>
+ * Duration周期从首次获取开始计时；Period周期按自然日历对齐：纯月/年按自1970-01起的整月数对齐，
+ * 整周按周一对齐，纯天按自1970-01-01起的天数对齐，年月日混合的按当天零点开始计时
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+final class RateWindow {
+
+  private static final LocalDate EPOCH_DAY = LocalDate.of(1970, 1, 1);
+  private static final LocalDate EPOCH_MONDAY =
+    EPOCH_DAY.with(TemporalAdjusters.nextOrSame(DayOfWeek.MONDAY));
+
+  private final TemporalAmount rateAmount;
+  private final ZoneId zone;
+  private final long durationNanos;
+  private final long periodMonths;
+  private final long periodDays;
+
+  RateWindow(TemporalAmount rateAmount, ZoneId zone) {
+    this.rateAmount = rateAmount;
+    this.zone = zone;
+
+    if (rateAmount instanceof Period) {
+      Period period = (Period) rateAmount;
+      this.durationNanos = 0;
+      this.periodMonths = period.toTotalMonths();
+      this.periodDays = period.getDays();
+      if (period.isNegative() || period.isZero()) {
+        throw new IllegalArgumentException("period must be positive: " + period);
+      }
+    } else {
+      this.durationNanos = Duration.from(rateAmount).toNanos();
+      this.periodMonths = 0;
+      this.periodDays = 0;
+      if (0 >= durationNanos) {
+        throw new IllegalArgumentException("duration must be positive: " + rateAmount);
+      }
+    }
+  }
+
+  /**
+   * 是否按自然日历对齐
+   */
+  boolean isCalendarAligned() {
+    return 0 == durationNanos;
+  }
+
+  /**
+   * Duration周期的长度
+   */
+  long durationNanos() {
+    return durationNanos;
+  }
+
+  /**
+   * 包含指定时刻的周期起点，Duration周期即为该时刻
+   *
+   * @param epochMillis 时刻
+   * @return 周期起点，epoch毫秒
+   */
+  long startOf(long epochMillis) {
+    if (!isCalendarAligned()) {
+      return epochMillis;
+    }
+
+    LocalDate day = Instant.ofEpochMilli(epochMillis).atZone(zone).toLocalDate();
+    LocalDate start;
+    if (0 == periodDays) {
+      LocalDate month = day.withDayOfMonth(1);
+      long months = ChronoUnit.MONTHS.between(EPOCH_DAY, month);
+      start = EPOCH_DAY.plusMonths(Math.floorDiv(months, periodMonths) * periodMonths);
+    } else if (0 == periodMonths && 0 == periodDays % 7) {
+      long days = ChronoUnit.DAYS.between(EPOCH_MONDAY, day);
+      start = EPOCH_MONDAY.plusDays(Math.floorDiv(days, periodDays) * periodDays);
+    } else if (0 == periodMonths) {
+      long days = ChronoUnit.DAYS.between(EPOCH_DAY, day);
+      start = EPOCH_DAY.plusDays(Math.floorDiv(days, periodDays) * periodDays);
+    } else {
+      start = day;
+    }
+
+    return start.atStartOfDay(zone).toInstant().toEpochMilli();
+  }
+
+  /**
+   * 周期终点
+   *
+   * @param startMillis 周期起点，epoch毫秒
+   * @return 周期终点，epoch毫秒
+   */
+  long endOf(long startMillis) {
+    if (!isCalendarAligned()) {
+      return startMillis + durationNanos / 1_000_000L;
+    }
+
+    ZonedDateTime start = Instant.ofEpochMilli(startMillis).atZone(zone);
+    return start.plus(rateAmount).toInstant().toEpochMilli();
+  }
+
+  /**
+   * 周期长度
+   *
+   * @param startMillis 周期起点，epoch毫秒
+   * @return 纳秒
+   */
+  long lengthNanos(long startMillis) {
+    if (!isCalendarAligned()) {
+      return durationNanos;
+    }
+
+    return (endOf(startMillis) - startMillis) * 1_000_000L;
+  }
+}
@@ -0,0 +1,289 @@
+package org.easyweb4j.concurrent.semaphore.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.temporal.TemporalAmount;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.easyweb4j.concurrent.semaphore.RateClock;
+import org.easyweb4j.concurrent.semaphore.RateSemaphore;
+import org.easyweb4j.concurrent.semaphore.RateSemaphoreStats;
+
+/**
+ * 跨进程共享的时间速率信号量，周期状态保存在同一台机器上的内存映射文件中，多个JVM共同遵守一个配额
+ * <p>
+ * 修改状态时先获取进程内的锁，再获取文件锁，文件锁由操作系统保证跨进程互斥。
+ * 获取文件锁期间被中断会关闭通道，因此加锁前暂时清除中断标记，通道被关闭时重新打开。
+ * 进程间只能共享墙上时钟，周期精度为毫秒，周期规则同{@link TimeRateSemaphore}
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class SharedMemoryRateSemaphore implements RateSemaphore {
+
+  private static final ConcurrentHashMap<Path, ReentrantLock> PROCESS_LOCKS =
+    new ConcurrentHashMap<>();
+
+  private static final long MAGIC = 0x5253454d53484d31L;
+  private static final int FILE_SIZE = 64;
+  private static final int MAX_PERMITS_OFFSET = 8;
+  private static final int WINDOW_START_OFFSET = 16;
+  private static final int WINDOW_END_OFFSET = 24;
+  private static final int USED_OFFSET = 32;
+  private static final int RESERVED_OFFSET = 40;
+
+  private final int maxPermits;
+  private final RateWindow rateWindow;
+  private final RateClock clock;
+  private final ReentrantLock processLock;
+  private final Path stateFile;
+  private final MappedByteBuffer mappedBuffer;
+
+  /**
+   * 持有进程内的锁时访问
+   */
+  private FileChannel channel;
+  private boolean closed;
+  private final RateMetrics metrics = new RateMetrics();
+
+  public SharedMemoryRateSemaphore(int maxPermits, TemporalAmount temporalAmount, Path stateFile,
+    RateClock clock) throws IOException {
+    if (1 > maxPermits) {
+      throw new IllegalArgumentException("maxPermits must be positive: " + maxPermits);
+    }
+
+    this.maxPermits = maxPermits;
+    this.clock = clock;
+    this.rateWindow = new RateWindow(temporalAmount, clock.zone());
+    this.stateFile = stateFile;
+    this.channel = FileChannel.open(stateFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+      StandardOpenOption.WRITE);
+    this.mappedBuffer = channel.map(MapMode.READ_WRITE, 0, FILE_SIZE);
+    this.processLock = PROCESS_LOCKS.computeIfAbsent(stateFile.toRealPath(),
+      k -> new ReentrantLock());
+
+    withLock(() -> {
+      if (MAGIC != mappedBuffer.getLong(0)) {
+        mappedBuffer.putLong(WINDOW_START_OFFSET, 0);
+        mappedBuffer.putLong(WINDOW_END_OFFSET, 0);
+        mappedBuffer.putLong(USED_OFFSET, 0);
+        mappedBuffer.putLong(RESERVED_OFFSET, 0);
+        mappedBuffer.putInt(MAX_PERMITS_OFFSET, maxPermits);
+        mappedBuffer.putLong(0, MAGIC);
+      } else if (maxPermits != mappedBuffer.getInt(MAX_PERMITS_OFFSET)) {
+        throw new IllegalStateException("maxPermits not match shared state: "
+          + mappedBuffer.getInt(MAX_PERMITS_OFFSET));
+      }
+      return 0L;
+    });
+  }
+
+  public SharedMemoryRateSemaphore(int maxPermits, TemporalAmount temporalAmount, Path stateFile)
+    throws IOException {
+    this(maxPermits, temporalAmount, stateFile, RateClock.SYSTEM);
+  }
+
+  @Override
+  public void acquire() throws InterruptedException {
+    acquire(1);
+  }
+
+  @Override
+  public void acquire(int permits) throws InterruptedException {
+    checkPermits(permits);
+    long startNanos = System.nanoTime();
+    long waitMillis;
+    while (0 < (waitMillis = withLock(() -> {
+      long now = rollWindow();
+      if (tryTake(permits)) {
+        return 0L;
+      }
+      return Math.max(1, mappedBuffer.getLong(WINDOW_END_OFFSET) - now);
+    }))) {
+      // 其他进程的归还无法通知，最多等待100ms后重试
+      TimeUnit.MILLISECONDS.sleep(Math.min(waitMillis, 100));
+    }
+    metrics.recordWait(System.nanoTime() - startNanos);
+  }
+
+  @Override
+  public void release() {
+    release(1);
+  }
+
+  @Override
+  public void release(int permits) {
+    withLock(() -> {
+      long used = mappedBuffer.getLong(USED_OFFSET);
+      mappedBuffer.putLong(USED_OFFSET, Math.max(0, used - permits));
+      return 0L;
+    });
+  }
+
+  @Override
+  public boolean tryAcquire() {
+    return tryAcquire(1);
+  }
+
+  @Override
+  public boolean tryAcquire(int permits) {
+    checkPermits(permits);
+    boolean granted = 1L == withLock(() -> {
+      rollWindow();
+      return tryTake(permits) ? 1L : 0L;
+    });
+    metrics.recordTryAcquire(granted);
+    return granted;
+  }
+
+  @Override
+  public long reserve(int permits) {
+    if (1 > permits) {
+      throw new IllegalArgumentException("permits must be positive: " + permits);
+    }
+
+    long waitNanos = withLock(() -> {
+      long now = rollWindow();
+      if (tryTake(permits)) {
+        return 0L;
+      }
+
+      // 当前周期已不足，按顺序预约后续周期的配额
+      long windowEnd = mappedBuffer.getLong(WINDOW_END_OFFSET);
+      long reserved = mappedBuffer.getLong(RESERVED_OFFSET);
+      long delayMillis = Math.max(0, windowEnd - now)
+        + (reserved + permits - 1) / maxPermits * (rateWindow.endOf(windowEnd) - windowEnd);
+      mappedBuffer.putLong(RESERVED_OFFSET, reserved + permits);
+      return TimeUnit.MILLISECONDS.toNanos(delayMillis);
+    });
+    metrics.recordWait(waitNanos);
+    return waitNanos;
+  }
+
+  /**
+   * 计数只包含本进程，使用率为所有进程共同的使用率
+   */
+  @Override
+  public RateSemaphoreStats stats() {
+    long used = withLock(() -> {
+      rollWindow();
+      return mappedBuffer.getLong(USED_OFFSET);
+    });
+    return metrics.snapshot((double) used / maxPermits);
+  }
+
+  @Override
+  public void close() throws Exception {
+    processLock.lock();
+    try {
+      closed = true;
+      channel.close();
+    } finally {
+      processLock.unlock();
+    }
+  }
+
+  private boolean tryTake(int permits) {
+    long used = mappedBuffer.getLong(USED_OFFSET);
+    if (0 < mappedBuffer.getLong(RESERVED_OFFSET) || used + permits > maxPermits) {
+      return false;
+    }
+
+    mappedBuffer.putLong(USED_OFFSET, used + permits);
+    return true;
+  }
+
+  /**
+   * 切换周期，调用时持有锁
+   *
+   * @return 当前时间，epoch毫秒
+   */
+  private long rollWindow() {
+    long now = clock.currentTimeMillis();
+    long start = mappedBuffer.getLong(WINDOW_START_OFFSET);
+    long end = mappedBuffer.getLong(WINDOW_END_OFFSET);
+    if (0 != end && now < end) {
+      return now;
+    }
+
+    long used = 0;
+    long reserved = mappedBuffer.getLong(RESERVED_OFFSET);
+    // 有预约时周期连续，预约优先占用新周期的配额
+    while (0 != end && 0 < reserved && now >= end) {
+      start = end;
+      end = rateWindow.endOf(start);
+      used = Math.min(reserved, maxPermits);
+      reserved -= used;
+    }
+
+    if (0 == end || now >= end) {
+      start = rateWindow.startOf(now);
+      end = rateWindow.endOf(start);
+      used = 0;
+    }
+
+    mappedBuffer.putLong(WINDOW_START_OFFSET, start);
+    mappedBuffer.putLong(WINDOW_END_OFFSET, end);
+    mappedBuffer.putLong(USED_OFFSET, used);
+    mappedBuffer.putLong(RESERVED_OFFSET, reserved);
+    return now;
+  }
+
+  private long withLock(LockedOperation operation) {
+    processLock.lock();
+    // 中断标记在加锁前清除，返回前恢复
+    boolean interrupted = Thread.interrupted();
+    try {
+      FileLock fileLock;
+      while (true) {
+        try {
+          fileLock = channel.lock(0, FILE_SIZE, false);
+          break;
+        } catch (ClosedChannelException e) {
+          if (closed) {
+            throw e;
+          }
+          // 加锁期间被中断，或此前被中断关闭，映射不受影响，只需重新打开通道
+          interrupted |= Thread.interrupted();
+          channel = FileChannel.open(stateFile, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        }
+      }
+
+      try {
+        return operation.apply();
+      } finally {
+        fileLock.release();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      processLock.unlock();
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void checkPermits(int permits) {
+    if (1 > permits || permits > maxPermits) {
+      throw new IllegalArgumentException(
+        "permits must be in [1, " + maxPermits + "]: " + permits);
+    }
+  }
+
+  @FunctionalInterface
+  private interface LockedOperation {
+
+    long apply();
+  }
+}
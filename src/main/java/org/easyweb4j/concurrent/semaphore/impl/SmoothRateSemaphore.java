@@ -0,0 +1,223 @@
+package org.easyweb4j.concurrent.semaphore.impl;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.easyweb4j.concurrent.semaphore.RateClock;
+import org.easyweb4j.concurrent.semaphore.RateSemaphore;
+import org.easyweb4j.concurrent.semaphore.RateSemaphoreStats;
+
+/**
+ * 平滑速率信号量，令牌按固定间隔发放，支持预热
+ * <p>
+ * 未设置预热时，最多积攒一个周期的令牌用于突发；设置预热时，冷启动从3倍间隔开始，在预热时间内线性降到稳定间隔
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class SmoothRateSemaphore implements RateSemaphore {
+
+  private static final double COLD_FACTOR = 3.0;
+
+  private final Object mutex = new Object();
+  private final RateClock clock;
+  private final RateMetrics metrics = new RateMetrics();
+
+  private final double stableIntervalNanos;
+  private final double maxStoredPermits;
+  private final long warmupPeriodNanos;
+  private final double thresholdPermits;
+  private final double slope;
+
+  private double storedPermits;
+  private long nextFreeTicketNanos;
+
+  /**
+   * 无预热
+   *
+   * @param permits    每个周期的数量
+   * @param rateAmount 周期
+   */
+  public SmoothRateSemaphore(int permits, Duration rateAmount) {
+    this(permits, rateAmount, Duration.ZERO);
+  }
+
+  /**
+   * @param permits      每个周期的数量
+   * @param rateAmount   周期
+   * @param warmupPeriod 预热时间，0表示不预热
+   */
+  public SmoothRateSemaphore(int permits, Duration rateAmount, Duration warmupPeriod) {
+    this(permits, rateAmount, warmupPeriod, RateClock.SYSTEM);
+  }
+
+  public SmoothRateSemaphore(int permits, Duration rateAmount, Duration warmupPeriod,
+    RateClock clock) {
+    checkPermits(permits);
+    this.clock = clock;
+    this.stableIntervalNanos = (double) rateAmount.toNanos() / permits;
+    this.warmupPeriodNanos = warmupPeriod.toNanos();
+
+    if (0 < warmupPeriodNanos) {
+      double coldIntervalNanos = stableIntervalNanos * COLD_FACTOR;
+      thresholdPermits = 0.5 * warmupPeriodNanos / stableIntervalNanos;
+      maxStoredPermits =
+        thresholdPermits + 2.0 * warmupPeriodNanos / (stableIntervalNanos + coldIntervalNanos);
+      slope = (coldIntervalNanos - stableIntervalNanos) / (maxStoredPermits - thresholdPermits);
+      // 冷启动
+      storedPermits = maxStoredPermits;
+    } else {
+      thresholdPermits = 0;
+      maxStoredPermits = permits;
+      slope = 0;
+      storedPermits = 0;
+    }
+
+    nextFreeTicketNanos = clock.nanoTime();
+  }
+
+  @Override
+  public void acquire() throws InterruptedException {
+    acquire(1);
+  }
+
+  @Override
+  public void acquire(int permits) throws InterruptedException {
+    TimeUnit.NANOSECONDS.sleep(reserve(permits));
+  }
+
+  /**
+   * 归还未使用的令牌，已预约的未来令牌优先归还
+   */
+  @Override
+  public void release() {
+    release(1);
+  }
+
+  @Override
+  public void release(int permits) {
+    synchronized (mutex) {
+      long now = clock.nanoTime();
+      long refundNanos = (long) (permits * stableIntervalNanos);
+      if (nextFreeTicketNanos > now) {
+        nextFreeTicketNanos = Math.max(now, nextFreeTicketNanos - refundNanos);
+        return;
+      }
+
+      storedPermits = Math.min(maxStoredPermits, storedPermits + permits);
+    }
+  }
+
+  @Override
+  public boolean tryAcquire() {
+    return tryAcquire(1);
+  }
+
+  @Override
+  public boolean tryAcquire(int permits) {
+    checkPermits(permits);
+    synchronized (mutex) {
+      long now = clock.nanoTime();
+      if (nextFreeTicketNanos > now) {
+        metrics.recordTryAcquire(false);
+        return false;
+      }
+
+      reserveEarliestAvailable(permits, now);
+      metrics.recordTryAcquire(true);
+      return true;
+    }
+  }
+
+  @Override
+  public long reserve(int permits) {
+    checkPermits(permits);
+    synchronized (mutex) {
+      long now = clock.nanoTime();
+      long momentAvailable = reserveEarliestAvailable(permits, now);
+      long waitNanos = Math.max(momentAvailable - now, 0);
+      metrics.recordWait(waitNanos);
+      return waitNanos;
+    }
+  }
+
+  /**
+   * 使用率为未积攒的令牌比例，预约了未来令牌时为1
+   */
+  @Override
+  public RateSemaphoreStats stats() {
+    synchronized (mutex) {
+      resync(clock.nanoTime());
+      return metrics.snapshot(1.0 - storedPermits / maxStoredPermits);
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+  }
+
+  private long reserveEarliestAvailable(int permits, long nowNanos) {
+    resync(nowNanos);
+    long returnValue = nextFreeTicketNanos;
+    double storedPermitsToSpend = Math.min(permits, storedPermits);
+    double freshPermits = permits - storedPermitsToSpend;
+    long waitNanos = storedPermitsToWaitTime(storedPermits, storedPermitsToSpend)
+      + (long) (freshPermits * stableIntervalNanos);
+
+    nextFreeTicketNanos = saturatedAdd(nextFreeTicketNanos, waitNanos);
+    storedPermits -= storedPermitsToSpend;
+    return returnValue;
+  }
+
+  private void resync(long nowNanos) {
+    if (nowNanos > nextFreeTicketNanos) {
+      double newPermits = (nowNanos - nextFreeTicketNanos) / coolDownIntervalNanos();
+      storedPermits = Math.min(maxStoredPermits, storedPermits + newPermits);
+      nextFreeTicketNanos = nowNanos;
+    }
+  }
+
+  /**
+   * 使用积攒令牌需要的时间，预热模式下积攒越多（越冷）越慢
+   */
+  private long storedPermitsToWaitTime(double storedPermits, double permitsToTake) {
+    if (0 >= warmupPeriodNanos) {
+      return 0;
+    }
+
+    double availablePermitsAboveThreshold = storedPermits - thresholdPermits;
+    long nanos = 0;
+    if (0 < availablePermitsAboveThreshold) {
+      double permitsAboveThresholdToTake = Math.min(availablePermitsAboveThreshold, permitsToTake);
+      double length = permitsToTime(availablePermitsAboveThreshold)
+        + permitsToTime(availablePermitsAboveThreshold - permitsAboveThresholdToTake);
+      nanos = (long) (permitsAboveThresholdToTake * length / 2.0);
+      permitsToTake -= permitsAboveThresholdToTake;
+    }
+
+    nanos += (long) (stableIntervalNanos * permitsToTake);
+    return nanos;
+  }
+
+  private double permitsToTime(double permits) {
+    return stableIntervalNanos + permits * slope;
+  }
+
+  private double coolDownIntervalNanos() {
+    return 0 < warmupPeriodNanos ? warmupPeriodNanos / maxStoredPermits : stableIntervalNanos;
+  }
+
+  private static long saturatedAdd(long a, long b) {
+    long naiveSum = a + b;
+    if ((a ^ b) < 0 || (a ^ naiveSum) >= 0) {
+      return naiveSum;
+    }
+    return Long.MAX_VALUE + ((naiveSum >>> (Long.SIZE - 1)) ^ 1);
+  }
+
+  private static void checkPermits(int permits) {
+    if (1 > permits) {
+      throw new IllegalArgumentException("permits must be positive: " + permits);
+    }
+  }
+}
@@ -1,20 +1,20 @@
 package org.easyweb4j.concurrent.semaphore.impl;
 
 import java.time.Duration;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.time.temporal.TemporalAmount;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.StampedLock;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.easyweb4j.concurrent.semaphore.RateClock;
 import org.easyweb4j.concurrent.semaphore.RateSemaphore;
+import org.easyweb4j.concurrent.semaphore.RateSemaphoreStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * 时间相关的速率信号量,支持秒级，分钟级，小时级，日级别, 周级别，自然月级别，自然年级别
+ * <p>
+ * 周期在获取时惰性切换，不依赖后台线程。计时使用单调时钟，Duration周期从首次获取开始，
+ * Period周期按自然日历对齐，边界只在切换周期时计算一次，获取路径上没有对象分配
  *
  * @author Ray(linxray @ gmail.com)
  * @date 2020/02/12
@@ -24,84 +24,35 @@ public class TimeRateSemaphore implements RateSemaphore {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(TimeRateSemaphore.class);
 
-  private static class ReleaseSemaphore implements Runnable {
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition windowChangedCondition = lock.newCondition();
 
-    private StampedLock hasBgThreadStartedLock = new StampedLock();
-    private boolean hasBgThreadStarted = false;
-    private volatile boolean isClose = false;
-    private TimeRateSemaphore timeRateSemaphore;
+  private final int maxPermits;
+  private final RateWindow rateWindow;
+  private final RateClock clock;
+  private final RateMetrics metrics = new RateMetrics();
 
-    public ReleaseSemaphore(TimeRateSemaphore timeRateSemaphore) {
-      this.timeRateSemaphore = timeRateSemaphore;
-    }
-
-    @Override
-    public void run() {
-      LOGGER.debug("bg release thread start");
-      if (isClose) {
-        LOGGER.debug("bg release thread die of close");
-        return;
-      }
-
-      long stamp = hasBgThreadStartedLock.writeLock();
-      try {
-        if (!timeRateSemaphore.hasSemaphoreRequireLastPeriod()) {
-          hasBgThreadStarted = false;
-          LOGGER.debug("bg release thread die of idle");
-          return;
-        }
-
-        // schedule again
-        timeRateSemaphore.startSchedule();
-        hasBgThreadStarted = true;
-      } finally {
-        hasBgThreadStartedLock.unlockWrite(stamp);
-
-        timeRateSemaphore.resetInternalSemaphore();
-      }
-
-    }
+  private boolean hasWindow;
+  private long windowStartMillis;
+  private long windowEndNanos;
+  private long usedPermits;
+  /**
+   * 已预约到后续周期的数量
+   */
+  private long reservedPermits;
 
-    void close() {
-      isClose = true;
+  public TimeRateSemaphore(int maxPermits, TemporalAmount temporalAmount, RateClock clock) {
+    if (1 > maxPermits) {
+      throw new IllegalArgumentException("maxPermits must be positive: " + maxPermits);
     }
 
-    void startBgReleaseThreadIfRequire() {
-      long stamp = hasBgThreadStartedLock.tryOptimisticRead();
-      if (hasBgThreadStarted) {
-        return;
-      }
-
-      long wstamp = hasBgThreadStartedLock.tryConvertToWriteLock(stamp);
-      if (0 != wstamp) {
-        stamp = wstamp;
-      } else {
-        return;
-      }
-
-      LOGGER.debug("require schedule");
-      try {
-        timeRateSemaphore.startSchedule();
-        hasBgThreadStarted = true;
-      } finally {
-        hasBgThreadStartedLock.unlockWrite(stamp);
-
-      }
-
-    }
+    this.maxPermits = maxPermits;
+    this.clock = clock;
+    this.rateWindow = new RateWindow(temporalAmount, clock.zone());
   }
 
-  private Semaphore internalSemaphore;
-
-  private int maxPermits;
-  private TemporalAmount rateAmount;
-  private ScheduledExecutorService executorService;
-  private ReleaseSemaphore releaseSemaphore;
-
   public TimeRateSemaphore(int maxPermits, TemporalAmount temporalAmount) {
-    this.rateAmount = temporalAmount;
-    this.maxPermits = maxPermits;
-    init();
+    this(maxPermits, temporalAmount, RateClock.SYSTEM);
   }
 
   /**
@@ -110,85 +61,218 @@ public class TimeRateSemaphore implements RateSemaphore {
    * @param maxPermits 最大允许量
    */
   public TimeRateSemaphore(int maxPermits) {
-    this.maxPermits = maxPermits;
-    rateAmount = Duration.ofSeconds(1);
-    init();
-  }
-
-  private void init() {
-    internalSemaphore = new Semaphore(maxPermits);
-    executorService = Executors.newScheduledThreadPool(1);
-
-    releaseSemaphore = new ReleaseSemaphore(this);
+    this(maxPermits, Duration.ofSeconds(1));
   }
 
   @Override
   public void acquire() throws InterruptedException {
-    resetBgReleaseThread();
-    internalSemaphore.acquire();
+    acquire(1);
   }
 
-
   @Override
   public void acquire(int permits) throws InterruptedException {
-    resetBgReleaseThread();
-    internalSemaphore.acquire(permits);
-  }
+    checkPermits(permits);
+    long startNanos = clock.nanoTime();
+    lock.lockInterruptibly();
+    try {
+      while (true) {
+        long now = clock.nanoTime();
+        rollWindow(now);
+        if (tryTake(permits)) {
+          metrics.recordWait(now - startNanos);
+          return;
+        }
 
-  private void resetBgReleaseThread() {
-    releaseSemaphore.startBgReleaseThreadIfRequire();
+        windowChangedCondition.awaitNanos(windowEndNanos - now);
+      }
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
   public void release() {
-    internalSemaphore.release();
+    release(1);
   }
 
   @Override
   public void release(int permits) {
-    internalSemaphore.release(permits);
+    lock.lock();
+    try {
+      usedPermits = Math.max(0, usedPermits - permits);
+      onPermitsChanged(windowStartMillis, usedPermits);
+      windowChangedCondition.signalAll();
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
   public boolean tryAcquire() {
-    resetBgReleaseThread();
-    return internalSemaphore.tryAcquire();
+    return tryAcquire(1);
   }
 
   @Override
   public boolean tryAcquire(int permits) {
-    resetBgReleaseThread();
-    return internalSemaphore.tryAcquire(permits);
+    checkPermits(permits);
+    lock.lock();
+    try {
+      rollWindow(clock.nanoTime());
+      boolean granted = tryTake(permits);
+      metrics.recordTryAcquire(granted);
+      return granted;
+    } finally {
+      lock.unlock();
+    }
   }
 
+  @Override
+  public long reserve(int permits) {
+    if (1 > permits) {
+      throw new IllegalArgumentException("permits must be positive: " + permits);
+    }
+
+    lock.lock();
+    try {
+      long now = clock.nanoTime();
+      rollWindow(now);
+      if (0 == reservedPermits && usedPermits + permits <= maxPermits) {
+        usedPermits += permits;
+        onPermitsChanged(windowStartMillis, usedPermits);
+        metrics.recordWait(0);
+        return 0;
+      }
+
+      // 当前周期已不足，按顺序预约后续周期的配额
+      long delay = Math.max(0, windowEndNanos - now);
+      delay += (reservedPermits + permits - 1) / maxPermits
+        * rateWindow.lengthNanos(rateWindow.endOf(windowStartMillis));
+      reservedPermits += permits;
+      metrics.recordWait(delay);
+      return delay;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public RateSemaphoreStats stats() {
+    lock.lock();
+    try {
+      rollWindow(clock.nanoTime());
+      return metrics.snapshot((double) usedPermits / maxPermits);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * 无后台线程，无需释放资源
+   */
   @Override
   public void close() throws Exception {
-    releaseSemaphore.close();
   }
 
-  private void resetInternalSemaphore() {
-    LOGGER.debug("reset semaphore");
-    internalSemaphore.drainPermits();
-    internalSemaphore.release(maxPermits);
+  /**
+   * 周期或周期内已使用数量变化后调用，调用时持有锁，实现需尽量轻量
+   *
+   * @param windowStartMillis 当前周期起点，epoch毫秒
+   * @param usedPermits       当前周期已使用数量
+   */
+  protected void onPermitsChanged(long windowStartMillis, long usedPermits) {
+  }
+
+  /**
+   * 恢复周期内已使用数量，仅当该周期仍未结束时生效
+   *
+   * @param windowStartMillis 周期起点，epoch毫秒
+   * @param usedPermits       已使用数量
+   * @return true恢复成功
+   */
+  protected boolean restore(long windowStartMillis, long usedPermits) {
+    lock.lock();
+    try {
+      long nowNanos = clock.nanoTime();
+      rollWindow(nowNanos);
+      if (!rateWindow.isCalendarAligned()) {
+        // Duration周期不对齐，沿用持久化的周期
+        long nowMillis = clock.currentTimeMillis();
+        long endMillis = rateWindow.endOf(windowStartMillis);
+        if (nowMillis >= endMillis || windowStartMillis > nowMillis) {
+          return false;
+        }
+
+        this.windowStartMillis = windowStartMillis;
+        this.windowEndNanos = nowNanos + (endMillis - nowMillis) * 1_000_000L;
+        this.usedPermits = Math.min(maxPermits, usedPermits);
+        return true;
+      }
+
+      if (windowStartMillis != this.windowStartMillis) {
+        return false;
+      }
+
+      this.usedPermits = Math.min(maxPermits, Math.max(this.usedPermits, usedPermits));
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  protected int maxPermits() {
+    return maxPermits;
   }
 
-  private void startSchedule() {
-    LOGGER.debug("start schedule exe");
-    long deadline = LocalDateTime.now().plus(rateAmount).atZone(ZoneId.systemDefault()).toInstant()
-      .toEpochMilli();
-    long now = LocalDateTime.now().atZone(ZoneId.systemDefault()).toInstant()
-      .toEpochMilli();
-    long delay = deadline - now;
-    executorService.schedule(
-      releaseSemaphore,
-      delay > 0 ? delay : 0,
-      TimeUnit.MILLISECONDS
-    );
+  /**
+   * 保护周期和已使用数量的锁，子类在{@link #onPermitsChanged}之外访问持久化状态时需持有
+   */
+  protected final ReentrantLock lock() {
+    return lock;
   }
 
-  private boolean hasSemaphoreRequireLastPeriod() {
-    return internalSemaphore.getQueueLength() > 0;
+  private boolean tryTake(int permits) {
+    if (0 < reservedPermits || usedPermits + permits > maxPermits) {
+      return false;
+    }
+
+    usedPermits += permits;
+    onPermitsChanged(windowStartMillis, usedPermits);
+    return true;
   }
 
+  private void rollWindow(long nowNanos) {
+    if (hasWindow && nowNanos - windowEndNanos < 0) {
+      return;
+    }
+
+    // 有预约时周期连续，预约优先占用新周期的配额
+    while (hasWindow && 0 < reservedPermits && nowNanos - windowEndNanos >= 0) {
+      long nextStartMillis = rateWindow.endOf(windowStartMillis);
+      windowEndNanos += rateWindow.lengthNanos(nextStartMillis);
+      windowStartMillis = nextStartMillis;
+      usedPermits = Math.min(reservedPermits, maxPermits);
+      reservedPermits -= usedPermits;
+    }
+
+    if (!hasWindow || nowNanos - windowEndNanos >= 0) {
+      long nowMillis = clock.currentTimeMillis();
+      windowStartMillis = rateWindow.startOf(nowMillis);
+      windowEndNanos = rateWindow.isCalendarAligned()
+        ? nowNanos + (rateWindow.endOf(windowStartMillis) - nowMillis) * 1_000_000L
+        : nowNanos + rateWindow.durationNanos();
+      usedPermits = 0;
+      hasWindow = true;
+    }
+
+    LOGGER.debug("roll window: start={}", windowStartMillis);
+    onPermitsChanged(windowStartMillis, usedPermits);
+    windowChangedCondition.signalAll();
+  }
 
+  private void checkPermits(int permits) {
+    if (1 > permits || permits > maxPermits) {
+      throw new IllegalArgumentException(
+        "permits must be in [1, " + maxPermits + "]: " + permits);
+    }
+  }
 }
@@ -0,0 +1,80 @@
+package org.easyweb4j.concurrent.semaphore.impl;
+
+import org.easyweb4j.concurrent.semaphore.AdaptiveLimiter.Outcome;
+import org.easyweb4j.concurrent.semaphore.LimitAlgorithm;
+
+/**
+ * TCP Vegas算法，以最小延迟作为无负载延迟估计排队长度，排队少于alpha时增加，多于beta时减少
+ * <p>
+ * 每隔probeInterval个样本重置最小延迟，以适应下游无负载延迟的变化
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class VegasLimitAlgorithm implements LimitAlgorithm {
+
+  private final int initialLimit;
+  private final int probeInterval;
+
+  private double estimatedLimit;
+  private long rttNoLoadNanos;
+  private int samplesSinceProbe;
+
+  /**
+   * @param initialLimit  初始并发上限
+   * @param probeInterval 重置最小延迟的样本间隔
+   */
+  public VegasLimitAlgorithm(int initialLimit, int probeInterval) {
+    this.initialLimit = initialLimit;
+    this.probeInterval = probeInterval;
+    this.estimatedLimit = initialLimit;
+  }
+
+  public VegasLimitAlgorithm(int initialLimit) {
+    this(initialLimit, 1000);
+  }
+
+  @Override
+  public int initialLimit() {
+    return initialLimit;
+  }
+
+  @Override
+  public int update(int limit, int inflight, Outcome outcome, long latencyNanos) {
+    // 以限制器修正后的值为准
+    estimatedLimit = Math.max(limit, Math.min(estimatedLimit, limit + 1));
+
+    if (++samplesSinceProbe >= probeInterval) {
+      samplesSinceProbe = 0;
+      rttNoLoadNanos = 0;
+    }
+
+    if (0 < latencyNanos && (0 == rttNoLoadNanos || latencyNanos < rttNoLoadNanos)) {
+      rttNoLoadNanos = latencyNanos;
+      return (int) estimatedLimit;
+    }
+
+    double log10Limit = Math.max(1.0, Math.log10(estimatedLimit));
+    if (Outcome.DROPPED == outcome) {
+      estimatedLimit = Math.max(1.0, estimatedLimit - log10Limit);
+      return (int) estimatedLimit;
+    }
+
+    // 并发远低于上限时说明不是瓶颈
+    if (inflight * 2 < estimatedLimit) {
+      return (int) estimatedLimit;
+    }
+
+    double queueSize = Math.ceil(estimatedLimit * (1 - (double) rttNoLoadNanos / latencyNanos));
+    double alpha = 3 * log10Limit;
+    double beta = 6 * log10Limit;
+    if (queueSize <= alpha) {
+      estimatedLimit += log10Limit;
+    } else if (queueSize >= beta) {
+      estimatedLimit = Math.max(1.0, estimatedLimit - log10Limit);
+    }
+
+    return (int) estimatedLimit;
+  }
+}
@@ -1,22 +1,63 @@
 package org.easyweb4j.storage.file;
 
-import java.io.FileOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
-import java.nio.channels.ByteChannel;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.Checksum;
+import java.util.zip.ZipException;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.lang3.RandomUtils;
+import org.apache.commons.codec.digest.PureJavaCrc32C;
 import org.apache.commons.lang3.StringUtils;
+import org.easyweb4j.concurrent.BoundedExecutors;
+import org.easyweb4j.concurrent.semaphore.RateSemaphore;
+import org.easyweb4j.util.DirectBufferPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * 抽象的文件服务，定义本地文件存储
@@ -27,6 +68,90 @@ import org.apache.commons.lang3.StringUtils;
  */
 public abstract class AbstractFileService implements FileService {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(AbstractFileService.class);
+
+  @FunctionalInterface
+  private interface ContentWriter {
+
+    void write(Path absDirPath, String fileName) throws IOException;
+  }
+
+  /**
+   * 流式写入时的缓冲大小
+   */
+  private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * 临时文件目录，相对前缀路径
+   */
+  protected static final String TMP_DIR = ".tmp";
+
+  /**
+   * 清单目录，相对前缀路径，每天一个清单文件，每行一个写入的相对路径
+   */
+  protected static final String MANIFEST_DIR = ".manifest";
+
+  /**
+   * 引用计数文件的后缀，只在引用数大于1时存在
+   */
+  private static final String REF_SUFFIX = ".ref";
+
+  /**
+   * 校验文件的后缀，内容为原始内容的CRC32C
+   */
+  private static final String CHECKSUM_SUFFIX = ".crc32c";
+
+  /**
+   * 编码标记文件的后缀，只有带标记的文件按编码读取，原始内容恰好以编码头开头时不会被误读
+   */
+  private static final String CODEC_SUFFIX = ".codec";
+
+  private static final int CONTENT_LOCK_STRIPES = 64;
+
+  private static final String DEFAULT_NODE_ID = DigestUtils
+    .sha1Hex(ManagementFactory.getRuntimeMXBean().getName()).substring(0, 8);
+
+  /**
+   * 节点内的名称序号，多个服务实例共享
+   */
+  private static final AtomicLong NAME_SEQUENCE = new AtomicLong();
+
+  /**
+   * 编码文件头：magic(4) + 编码标识(1) + 保留(3) + 原始长度(8)
+   */
+  private static final int CODEC_HEADER_SIZE = 16;
+  private static final int CODEC_MAGIC = 0x45574331;
+
+  private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HHmmssSSS");
+  private static final DateTimeFormatter TIMESTAMP_FORMATTER =
+    DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
+  private static final DateTimeFormatter MANIFEST_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
+
+  private final Object[] contentLocks = new Object[CONTENT_LOCK_STRIPES];
+
+  private volatile DurabilityPolicy durabilityPolicy;
+
+  /**
+   * 已确认存在的目录
+   */
+  private final Set<Path> knownDirectories = ConcurrentHashMap.newKeySet();
+
+  /**
+   * 已探测过的文件存储是否支持硬链接
+   */
+  private final Map<FileStore, Boolean> linkSupport = new ConcurrentHashMap<>();
+
+  /**
+   * 当天的日期目录
+   */
+  private volatile DatePath datePath;
+
+  {
+    for (int i = 0; i < CONTENT_LOCK_STRIPES; i++) {
+      contentLocks[i] = new Object();
+    }
+  }
+
   /**
    * 获取默认前缀路径
    *
@@ -37,42 +162,193 @@ public abstract class AbstractFileService implements FileService {
   @Override
   public Path storeFileUsingDate(ByteBuffer content, String fileName, String suffix)
     throws IOException {
-    LocalDateTime now = LocalDateTime.now();
-    String format = now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd,HHmmssSSS"));
-    int colonPos = format.indexOf(",");
-    String dirPart = format.substring(0, colonPos);
-    String fileNamePart = format.substring(colonPos + 1);
+    return storeUsingDate(fileName, suffix,
+      (absDirPath, actualFileName) -> write2File(absDirPath, actualFileName, content));
+  }
+
+  @Override
+  public Path storeFileUsingDate(ReadableByteChannel content, String fileName, String suffix)
+    throws IOException {
+    return storeUsingDate(fileName, suffix,
+      (absDirPath, actualFileName) -> write2File(absDirPath, actualFileName, content));
+  }
+
+  @Override
+  public Path storeFileUsingHash(ByteBuffer content, String fileName, String suffix)
+    throws IOException {
+    return storeUsingHash(fileName, suffix,
+      (absDirPath, actualFileName) -> write2File(absDirPath, actualFileName, content));
+  }
+
+  @Override
+  public Path storeFileUsingHash(ReadableByteChannel content, String fileName, String suffix)
+    throws IOException {
+    return storeUsingHash(fileName, suffix,
+      (absDirPath, actualFileName) -> write2File(absDirPath, actualFileName, content));
+  }
+
+  @Override
+  public Path storeFileUsingDate(ByteBuffer[] contents, String fileName, String suffix)
+    throws IOException {
+    return storeUsingDate(fileName, suffix,
+      (absDirPath, actualFileName) -> write2File(absDirPath, actualFileName, contents));
+  }
+
+  @Override
+  public Path storeFileUsingHash(ByteBuffer[] contents, String fileName, String suffix)
+    throws IOException {
+    return storeUsingHash(fileName, suffix,
+      (absDirPath, actualFileName) -> write2File(absDirPath, actualFileName, contents));
+  }
+
+  @Override
+  public Path storeFileUsingContent(ByteBuffer content, String suffix) throws IOException {
+    MessageDigest digest = DigestUtils.getSha256Digest();
+    digest.update(content.duplicate());
+    Path relativePath = contentRelativePath(Hex.encodeHexString(digest.digest()), suffix);
 
-    Path relativeDirPath = null;
-    for (String part : dirPart.split("-")) {
-      if (null == relativeDirPath) {
-        relativeDirPath = Paths.get(part);
-        continue;
+    Path absFilePath = prefix().resolve(relativePath);
+    String actualFileName = relativePath.getFileName().toString();
+    synchronized (contentLock(actualFileName)) {
+      if (Files.exists(absFilePath)) {
+        // 已存在相同内容，跳过写入
+        incrementReference(absFilePath);
+        return relativePath;
       }
 
-      relativeDirPath = relativeDirPath.resolve(part);
+      write2File(absFilePath.getParent(), actualFileName, content);
+      appendManifest(relativePath);
     }
+    return relativePath;
+  }
 
-    String actualFileName =
-      concatFileName(StringUtils.isBlank(fileName) ? fileNamePart : fileName, suffix);
-
-    write2File(prefix().resolve(relativeDirPath), actualFileName, content);
+  @Override
+  public Path storeFileUsingContent(ReadableByteChannel content, String suffix)
+    throws IOException {
+    Path tmpFile = tmpFilePath();
+    try {
+      // 边写临时文件边计算hash
+      MessageDigest digest = DigestUtils.getSha256Digest();
+      Checksum checksum = newChecksum();
+      FileCodec codec = fileCodec(StringUtils.removeStart(suffix, "."));
+      try (FileChannel channel = openTmpFile(tmpFile)) {
+        if (null != codec) {
+          writeEncoded(channel, codec, out -> copy(content, out, digest, checksum));
+        } else {
+          transfer(content, channel, digest, checksum);
+        }
+      }
 
-    return relativeDirPath.resolve(actualFileName);
+      Path relativePath = contentRelativePath(Hex.encodeHexString(digest.digest()), suffix);
+      Path absFilePath = prefix().resolve(relativePath);
+      synchronized (contentLock(relativePath.getFileName().toString())) {
+        if (Files.exists(absFilePath)) {
+          incrementReference(absFilePath);
+        } else {
+          publish(tmpFile, absFilePath, codec);
+          writeChecksum(absFilePath, checksum);
+          appendManifest(relativePath);
+        }
+      }
+      return relativePath;
+    } finally {
+      Files.deleteIfExists(tmpFile);
+    }
   }
 
   @Override
-  public Path storeFileUsingHash(ByteBuffer content, String fileName, String suffix)
+  public boolean delete(Path filePath) throws IOException {
+    Path absFilePath = locate(filePath);
+    synchronized (contentLock(absFilePath.getFileName().toString())) {
+      Path refPath = referencePath(absFilePath);
+      if (Files.exists(refPath)) {
+        long references = readReference(refPath) - 1;
+        if (1 < references) {
+          writeReference(refPath, references);
+        } else {
+          Files.delete(refPath);
+        }
+        return true;
+      }
+
+      Files.deleteIfExists(checksumPath(absFilePath));
+      boolean deleted = Files.deleteIfExists(absFilePath);
+      Files.deleteIfExists(codecPath(absFilePath));
+      return deleted;
+    }
+  }
+
+  private Path contentRelativePath(String hashDigestStr, String suffix) {
+    return Paths.get(
+      hashDigestStr.substring(0, 2),
+      hashDigestStr.substring(2, 4),
+      concatFileName(hashDigestStr, suffix)
+    );
+  }
+
+  private Object contentLock(String fileName) {
+    return contentLocks[(fileName.hashCode() & Integer.MAX_VALUE) % CONTENT_LOCK_STRIPES];
+  }
+
+  private void incrementReference(Path absFilePath) throws IOException {
+    Path refPath = referencePath(absFilePath);
+    long references = Files.exists(refPath) ? readReference(refPath) : 1;
+    writeReference(refPath, references + 1);
+  }
+
+  private Path referencePath(Path absFilePath) {
+    return absFilePath.resolveSibling(absFilePath.getFileName() + REF_SUFFIX);
+  }
+
+  private long readReference(Path refPath) throws IOException {
+    return Long.parseLong(new String(Files.readAllBytes(refPath), StandardCharsets.US_ASCII)
+      .trim());
+  }
+
+  /**
+   * 写入同目录的临时文件后原子替换，崩溃或空间不足时保留原来的引用数；
+   * 临时文件同样以引用后缀结尾，不会被列出
+   */
+  private void writeReference(Path refPath, long references) throws IOException {
+    Path tmpRefPath = refPath.resolveSibling(
+      refPath.getFileName() + "." + nextUniqueName("tmp") + REF_SUFFIX);
+    try {
+      Files.write(tmpRefPath, Long.toString(references).getBytes(StandardCharsets.US_ASCII),
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+      durability().sync(tmpRefPath);
+      Files.move(tmpRefPath, refPath, StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tmpRefPath);
+    }
+    durability().sync(refPath);
+  }
+
+  private Path storeUsingDate(String fileName, String suffix, ContentWriter writer)
     throws IOException {
-    // long(yyyyMMddHHmmssSSS) 8 bytes + random int(10000, 100000000) 4 bytes
-    byte[] hashContent = new byte[12];
-    ByteBuffer.wrap(hashContent)
-      .putLong(Long.valueOf(LocalDateTime.now().format(
-        DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS")
-      )))
-      .putInt(RandomUtils.nextInt(10000, 100000000));
+    LocalDateTime now = LocalDateTime.now();
+    LocalDate today = now.toLocalDate();
+    DatePath cachedDatePath = datePath;
+    if (null == cachedDatePath || !today.equals(cachedDatePath.day)) {
+      // 跨天时重新生成目录
+      cachedDatePath = new DatePath(today);
+      datePath = cachedDatePath;
+    }
 
-    String hashDigestStr = DigestUtils.sha1Hex(hashContent).toLowerCase();
+    Path relativeDirPath = cachedDatePath.relativeDirPath;
+    String actualFileName = concatFileName(StringUtils.isBlank(fileName)
+      ? nextUniqueName(TIME_FORMATTER.format(now)) : fileName, suffix);
+
+    writer.write(prefix().resolve(relativeDirPath), actualFileName);
+
+    return appendManifest(relativeDirPath.resolve(actualFileName));
+  }
+
+  private Path storeUsingHash(String fileName, String suffix, ContentWriter writer)
+    throws IOException {
+    // yyyyMMddHHmmssSSS-节点-序号，进程内不重复，hash只用于打散目录
+    String hashDigestStr = DigestUtils
+      .sha1Hex(nextUniqueName(TIMESTAMP_FORMATTER.format(LocalDateTime.now()))).toLowerCase();
 
     Path relativePath = Paths.get(
       hashDigestStr.substring(0, 2),
@@ -81,43 +357,968 @@ public abstract class AbstractFileService implements FileService {
     String actualFileName =
       concatFileName(StringUtils.isBlank(fileName) ? hashDigestStr : fileName, suffix);
 
-    write2File(prefix().resolve(relativePath), actualFileName, content);
-    return relativePath.resolve(actualFileName);
+    writer.write(prefix().resolve(relativePath), actualFileName);
+    return appendManifest(relativePath.resolve(actualFileName));
   }
 
+  /**
+   * 创建目录，已确认存在的目录缓存在内存中，之后不再访问文件系统
+   */
   private boolean createDirectories(Path creatingDir) throws IOException {
     if (!creatingDir.isAbsolute()) {
       return false;
     }
 
+    if (knownDirectories.contains(creatingDir)) {
+      return true;
+    }
+
     if (!Files.exists(creatingDir)) {
       // TODO window 处理
       Files.createDirectories(creatingDir, defaultFileAttrs());
     }
+    knownDirectories.add(creatingDir);
     return true;
   }
 
+  /**
+   * 目录被外部删除后，从缓存中移除
+   *
+   * @param absDirPath 目录绝对路径
+   */
+  protected void forgetDirectory(Path absDirPath) {
+    knownDirectories.remove(absDirPath);
+  }
+
+  /**
+   * 写入后的持久化策略，只在首次写入时获取一次，默认不刷盘
+   *
+   * @return 策略
+   */
+  protected DurabilityPolicy durabilityPolicy() {
+    return DurabilityPolicy.none();
+  }
+
+  private DurabilityPolicy durability() {
+    DurabilityPolicy policy = durabilityPolicy;
+    if (null == policy) {
+      synchronized (this) {
+        policy = durabilityPolicy;
+        if (null == policy) {
+          policy = durabilityPolicy();
+          durabilityPolicy = policy;
+        }
+      }
+    }
+    return policy;
+  }
+
   protected FileAttribute defaultFileAttrs() {
     return PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwxr--r--"));
   }
 
+  /**
+   * 先写入临时文件，再发布到目标位置，并发写入同名文件时只有一个成功，不会互相覆盖
+   */
   protected void write2File(Path absDirPath, String fileName, ByteBuffer content)
     throws IOException {
-    Path absFiePath = absDirPath.resolve(fileName);
-    if (Files.exists(absFiePath)) {
-      throw new FileAlreadyExistsException(absFiePath.toString());
+    write2File(absDirPath, fileName, new ByteBuffer[]{content});
+  }
+
+  /**
+   * 多段内容按顺序写入同一文件，不合并
+   */
+  protected void write2File(Path absDirPath, String fileName, ByteBuffer[] contents)
+    throws IOException {
+    Path tmpFile = tmpFilePath();
+    try {
+      Checksum checksum = newChecksum();
+      ByteBuffer[] dupedContents = new ByteBuffer[contents.length];
+      for (int i = 0; i < contents.length; i++) {
+        dupedContents[i] = contents[i].duplicate();
+        if (null != checksum) {
+          update(checksum, contents[i].duplicate());
+        }
+      }
+
+      FileCodec codec = fileCodec(StringUtils.substringAfterLast(fileName, "."));
+      try (FileChannel channel = openTmpFile(tmpFile)) {
+        if (null != codec) {
+          writeEncoded(channel, codec, out -> {
+            long length = 0;
+            for (ByteBuffer dupedContent : dupedContents) {
+              length += copy(dupedContent, out);
+            }
+            return length;
+          });
+        } else {
+          writeFully(channel, dupedContents);
+        }
+      }
+      publish(tmpFile, absDirPath.resolve(fileName), codec);
+      writeChecksum(absDirPath.resolve(fileName), checksum);
+    } finally {
+      Files.deleteIfExists(tmpFile);
+    }
+  }
+
+  /**
+   * 流式写入，源为文件时文件间直接传输，否则经直接缓冲分块写入
+   */
+  protected void write2File(Path absDirPath, String fileName, ReadableByteChannel content)
+    throws IOException {
+    Path tmpFile = tmpFilePath();
+    try {
+      Checksum checksum = newChecksum();
+      FileCodec codec = fileCodec(StringUtils.substringAfterLast(fileName, "."));
+      try (FileChannel channel = openTmpFile(tmpFile)) {
+        if (null != codec) {
+          writeEncoded(channel, codec, out -> copy(content, out, null, checksum));
+        } else {
+          transfer(content, channel, null, checksum);
+        }
+      }
+      publish(tmpFile, absDirPath.resolve(fileName), codec);
+      writeChecksum(absDirPath.resolve(fileName), checksum);
+    } finally {
+      Files.deleteIfExists(tmpFile);
+    }
+  }
+
+  /**
+   * 从通道读取写入文件，同时计算摘要和校验和；都不需要且源为文件时文件间直接传输
+   */
+  private void transfer(ReadableByteChannel content, FileChannel channel,
+    MessageDigest digest, Checksum checksum) throws IOException {
+    if (null == digest && null == checksum && content instanceof FileChannel) {
+      long position = 0;
+      long transferred;
+      while (0 < (transferred = channel.transferFrom(content, position, Long.MAX_VALUE))) {
+        position += transferred;
+      }
+      return;
+    }
+
+    // 校验和只能按数组计算
+    DirectBufferPool pool = bufferPool();
+    ByteBuffer buffer = null == checksum ? pool.acquire(STREAM_BUFFER_SIZE)
+      : ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+    try {
+      while (-1 != content.read(buffer)) {
+        buffer.flip();
+        if (null != digest) {
+          digest.update(buffer.duplicate());
+        }
+        if (null != checksum) {
+          checksum.update(buffer.array(), buffer.arrayOffset(), buffer.remaining());
+        }
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        buffer.clear();
+      }
+    } finally {
+      if (null == checksum) {
+        pool.release(buffer);
+      }
+    }
+  }
+
+  /**
+   * 读写文件时使用的直接缓冲池，默认为进程共享的池
+   *
+   * @return 缓冲池
+   */
+  protected DirectBufferPool bufferPool() {
+    return DirectBufferPool.shared();
+  }
+
+  /**
+   * 堆内缓冲经池化的直接缓冲分块写入，JDK直接写入堆内缓冲时会分配并按线程缓存同样大小的临时直接缓冲
+   */
+  private void writeFully(FileChannel channel, ByteBuffer src) throws IOException {
+    if (src.isDirect()) {
+      while (src.hasRemaining()) {
+        channel.write(src);
+      }
+      return;
+    }
+
+    DirectBufferPool pool = bufferPool();
+    ByteBuffer buffer = pool.acquire(Math.min(STREAM_BUFFER_SIZE, src.remaining()));
+    try {
+      int chunkSize = buffer.limit();
+      while (src.hasRemaining()) {
+        ByteBuffer chunk = src.duplicate();
+        chunk.limit(chunk.position() + Math.min(chunkSize, chunk.remaining()));
+        buffer.clear();
+        buffer.put(chunk).flip();
+        src.position(chunk.position());
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+    } finally {
+      pool.release(buffer);
+    }
+  }
+
+  /**
+   * 直接缓冲和较小的堆内缓冲一次聚集写入，堆内缓冲较大时逐个分块写入
+   */
+  private void writeFully(FileChannel channel, ByteBuffer[] srcs) throws IOException {
+    if (STREAM_BUFFER_SIZE < heapRemaining(srcs)) {
+      for (ByteBuffer src : srcs) {
+        writeFully(channel, src);
+      }
+      return;
+    }
+
+    while (hasRemaining(srcs)) {
+      channel.write(srcs);
+    }
+  }
+
+  /**
+   * 从指定位置依次读满各个缓冲或到文件末尾，与聚集写入相同，较大的堆内缓冲逐个分块读取
+   *
+   * @return 读取的字节数，位置已在文件末尾时返回-1
+   */
+  private long readFully(FileChannel channel, long position, ByteBuffer[] dsts)
+    throws IOException {
+    long total = 0;
+    if (STREAM_BUFFER_SIZE < heapRemaining(dsts)) {
+      for (ByteBuffer dst : dsts) {
+        int read = readFully(channel, position + total, dst);
+        if (-1 == read) {
+          break;
+        }
+        total += read;
+      }
+    } else {
+      channel.position(position);
+      long read;
+      while (hasRemaining(dsts) && -1 != (read = channel.read(dsts))) {
+        total += read;
+      }
+    }
+    return 0 == total && hasRemaining(dsts) ? -1 : total;
+  }
+
+  private static long heapRemaining(ByteBuffer[] buffers) {
+    long remaining = 0;
+    for (ByteBuffer buffer : buffers) {
+      if (!buffer.isDirect()) {
+        remaining += buffer.remaining();
+      }
+    }
+    return remaining;
+  }
+
+  private static boolean hasRemaining(ByteBuffer[] buffers) {
+    for (ByteBuffer buffer : buffers) {
+      if (buffer.hasRemaining()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 从指定位置读满dst或到文件末尾，堆内缓冲经池化的直接缓冲分块读取
+   *
+   * @return 读取的字节数，位置已在文件末尾时返回-1
+   */
+  private int readFully(FileChannel channel, long position, ByteBuffer dst) throws IOException {
+    int total = 0;
+    if (dst.isDirect()) {
+      int read;
+      while (dst.hasRemaining() && -1 != (read = channel.read(dst, position + total))) {
+        total += read;
+      }
+      return 0 == total && dst.hasRemaining() ? -1 : total;
+    }
+
+    DirectBufferPool pool = bufferPool();
+    ByteBuffer buffer = pool.acquire(Math.min(STREAM_BUFFER_SIZE, dst.remaining()));
+    try {
+      int chunkSize = buffer.limit();
+      while (dst.hasRemaining()) {
+        buffer.clear().limit(Math.min(chunkSize, dst.remaining()));
+        int read = channel.read(buffer, position + total);
+        if (-1 == read) {
+          break;
+        }
+        buffer.flip();
+        dst.put(buffer);
+        total += read;
+      }
+    } finally {
+      pool.release(buffer);
+    }
+    return 0 == total && dst.hasRemaining() ? -1 : total;
+  }
+
+  /**
+   * 是否在写入时计算CRC32C并保存在旁边的校验文件中，默认不计算
+   *
+   * @return true计算
+   */
+  protected boolean checksumEnabled() {
+    return false;
+  }
+
+  /**
+   * 完整读取时是否校验，只校验有校验文件的文件，默认不校验
+   *
+   * @return true校验
+   */
+  protected boolean verifyChecksumOnRead() {
+    return false;
+  }
+
+  /**
+   * 校验内容，未记录校验和的文件视为一致
+   */
+  @Override
+  public boolean verify(Path filePath) throws IOException {
+    return !Boolean.FALSE.equals(checkFile(filePath, null));
+  }
+
+  /**
+   * 并行校验所有文件，包括冷存储中的，报告损坏的文件
+   *
+   * @param parallelism 并行数
+   * @param throttle    读取限速，每个许可为64KB，null不限速
+   * @return 报告，遍历期间消失的目录记为失败
+   * @throws IOException 被中断
+   */
+  public ScrubReport scrub(int parallelism, RateSemaphore throttle) throws IOException {
+    if (1 > parallelism) {
+      throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+    }
+
+    ScrubReport.Builder report = new ScrubReport.Builder();
+    ExecutorService executorService = BoundedExecutors.newBoundedExecutorService(
+      parallelism * 2, parallelism, "file-scrub", Thread.MIN_PRIORITY);
+    // 限制已提交未完成的数量不超过队列大小，避免拒绝
+    Semaphore submitted = new Semaphore(parallelism * 2);
+    Path hotRoot = prefix();
+    List<Path> roots = new ArrayList<>();
+    roots.add(hotRoot);
+    if (null != coldPrefix() && Files.isDirectory(coldPrefix())) {
+      roots.add(coldPrefix());
+    }
+
+    try {
+      for (Path root : roots) {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            return isInternal(root.relativize(dir)) ? FileVisitResult.SKIP_SUBTREE
+              : FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+            throws IOException {
+            Path relativePath = root.relativize(file);
+            // 移动到冷存储中断时两处都有，前缀路径中的已校验
+            if (!attrs.isRegularFile() || isSidecar(file)
+              || (!hotRoot.equals(root) && Files.exists(hotRoot.resolve(relativePath)))) {
+              return FileVisitResult.CONTINUE;
+            }
+
+            try {
+              submitted.acquire();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new InterruptedIOException("scrub interrupted");
+            }
+            executorService.execute(() -> {
+              try {
+                report.record(relativePath, checkFile(relativePath, throttle));
+              } catch (IOException e) {
+                report.recordError(relativePath, e);
+              } finally {
+                submitted.release();
+              }
+            });
+            return FileVisitResult.CONTINUE;
+          }
+
+          /**
+           * 遍历期间目录被过期或移动到冷存储
+           */
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException e) {
+            report.recordError(root.relativize(file), e);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+      }
+    } finally {
+      executorService.shutdown();
+    }
+
+    try {
+      executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      executorService.shutdownNow();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("scrub interrupted");
+    }
+    return report.build();
+  }
+
+  /**
+   * 按日期列出{@link #storeFileUsingDate}写入的文件，只访问范围内每天的目录，包括冷存储中的
+   * <p>
+   * 结果惰性读取，使用后需关闭。方法本身不并行遍历，也不持有线程池：需要并行时调用方对结果调用
+   * {@code parallel()}，按天的目录拆分，并在自己的ForkJoinPool中执行终端操作以免占用公共池，
+   * 并行度和线程由调用方决定
+   *
+   * @param from 开始日期，包含
+   * @param to   结束日期，包含
+   * @return 相对路径
+   */
+  public Stream<Path> listByDate(LocalDate from, LocalDate to) {
+    return listFiles(days(from, to).stream().map(day -> new DatePath(day).relativeDirPath),
+      true, file -> true);
+  }
+
+  /**
+   * 按hash前缀列出{@link #storeFileUsingHash}和{@link #storeFileUsingContent}写入的文件
+   * <p>
+   * 前缀的前4位确定目录，只访问匹配的目录，超过4位时再按文件名过滤，指定了文件名的文件只能按目录匹配。
+   * 结果惰性读取，使用后需关闭；与{@link #listByDate}一样不在方法内并行，并行流按目录拆分
+   *
+   * @param hashPrefix 小写十六进制前缀，空串列出所有hash目录
+   * @return 相对路径
+   * @throws IOException 读取一级目录失败
+   */
+  public Stream<Path> listByHashPrefix(String hashPrefix) throws IOException {
+    String prefix = StringUtils.defaultString(hashPrefix);
+    if (!isHashName(prefix, prefix.length())) {
+      throw new IllegalArgumentException("invalid hash prefix: " + hashPrefix);
+    }
+
+    List<Path> dirs = new ArrayList<>();
+    for (Path firstDir : hashDirs(Paths.get(""), StringUtils.left(prefix, 2))) {
+      dirs.addAll(hashDirs(firstDir, prefix.length() > 2 ? prefix.substring(2, Math.min(4,
+        prefix.length())) : ""));
+    }
+    return listFiles(dirs.stream(), false,
+      file -> 4 >= prefix.length() || file.getFileName().toString().startsWith(prefix));
+  }
+
+  /**
+   * 按清单列出范围内每天写入的文件，包括所有写入方式，按内容寻址时只记录首次写入，
+   * 只读取清单不遍历目录，已删除的文件被过滤；需启用{@link #manifestEnabled()}
+   *
+   * @param from 开始日期，包含
+   * @param to   结束日期，包含
+   * @return 相对路径，按写入顺序
+   */
+  public Stream<Path> listStored(LocalDate from, LocalDate to) {
+    Path root = prefix();
+    return days(from, to).stream()
+      .map(day -> root.resolve(MANIFEST_DIR).resolve(MANIFEST_FORMATTER.format(day)))
+      .flatMap(manifest -> {
+        try {
+          return Files.exists(manifest) ? Files.lines(manifest, StandardCharsets.UTF_8)
+            : Stream.<String>empty();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      })
+      .filter(StringUtils::isNotEmpty)
+      .map(Paths::get)
+      .filter(file -> Files.exists(locate(file)));
+  }
+
+  /**
+   * 是否在每次写入后将相对路径追加到当天的清单中，供{@link #listStored}使用，默认不记录
+   *
+   * @return true记录
+   */
+  protected boolean manifestEnabled() {
+    return false;
+  }
+
+  /**
+   * 每行一次write(2)追加，O_APPEND使每次写入都定位到文件末尾，本地文件系统上并发写入的行不会互相覆盖，
+   * NFS等不保证；清单只是索引，不刷盘
+   */
+  private Path appendManifest(Path relativePath) throws IOException {
+    if (!manifestEnabled()) {
+      return relativePath;
+    }
+
+    Path manifestDir = prefix().resolve(MANIFEST_DIR);
+    createDirectories(manifestDir);
+    Files.write(manifestDir.resolve(MANIFEST_FORMATTER.format(LocalDate.now())),
+      (relativePath.toString() + "\n").getBytes(StandardCharsets.UTF_8),
+      StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    return relativePath;
+  }
+
+  /**
+   * @param includeCold 是否同时列出冷存储中的目录，只有日期目录会移动到冷存储
+   */
+  private Stream<Path> listFiles(Stream<Path> relativeDirs, boolean includeCold,
+    Predicate<Path> filter) {
+    Path root = prefix();
+    Path coldRoot = includeCold ? coldPrefix() : null;
+    if (null == coldRoot) {
+      return relativeDirs.flatMap(dir -> listFiles(root, dir, filter));
+    }
+
+    // 移动到冷存储中断时两处都有，以前缀路径中的为准，与读取一致
+    return relativeDirs.flatMap(dir -> Stream.concat(listFiles(root, dir, filter),
+      listFiles(coldRoot, dir, file -> filter.test(file)
+        && !Files.exists(root.resolve(coldRoot.relativize(file))))));
+  }
+
+  private static Stream<Path> listFiles(Path root, Path relativeDir, Predicate<Path> filter) {
+    Path dir = root.resolve(relativeDir);
+    try {
+      return (Files.isDirectory(dir) ? Files.list(dir) : Stream.<Path>empty())
+        .filter(file -> !isSidecar(file) && filter.test(file) && Files.isRegularFile(file))
+        .map(root::relativize);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * 列出两位十六进制名称的子目录
+   *
+   * @param relativeDir 父目录
+   * @param namePrefix  名称前缀，为2位时直接返回该目录
+   */
+  private List<Path> hashDirs(Path relativeDir, String namePrefix) throws IOException {
+    if (2 == namePrefix.length()) {
+      return Collections.singletonList(relativeDir.resolve(namePrefix));
+    }
+
+    Path absDir = prefix().resolve(relativeDir);
+    if (!Files.isDirectory(absDir)) {
+      return Collections.emptyList();
+    }
+
+    List<Path> dirs = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(absDir)) {
+      for (Path dir : stream) {
+        String name = dir.getFileName().toString();
+        if (isHashName(name, 2) && name.startsWith(namePrefix) && Files.isDirectory(dir)) {
+          dirs.add(relativeDir.resolve(name));
+        }
+      }
+    }
+    Collections.sort(dirs);
+    return dirs;
+  }
+
+  private static boolean isHashName(String name, int length) {
+    if (length != name.length()) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      char c = name.charAt(i);
+      if (!(('0' <= c && c <= '9') || ('a' <= c && c <= 'f'))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<LocalDate> days(LocalDate from, LocalDate to) {
+    if (null == from || null == to) {
+      throw new IllegalArgumentException("from and to must not be null");
+    }
+
+    List<LocalDate> days = new ArrayList<>();
+    for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+      days.add(day);
+    }
+    return days;
+  }
+
+  /**
+   * 临时目录和清单目录等内部文件
+   */
+  private static boolean isInternal(Path relativePath) {
+    String first = relativePath.getName(0).toString();
+    return TMP_DIR.equals(first) || MANIFEST_DIR.equals(first);
+  }
+
+  /**
+   * 读取文件计算校验和并比对
+   *
+   * @return null未记录校验和，true一致，false损坏
+   */
+  private Boolean checkFile(Path filePath, RateSemaphore throttle) throws IOException {
+    Path absFilePath = locate(filePath);
+    Long expected = readChecksum(absFilePath);
+    if (null == expected) {
+      return null;
+    }
+
+    Checksum checksum = new PureJavaCrc32C();
+    ByteBuffer buffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+    try (ReadableByteChannel channel = openReadChannel(filePath)) {
+      while (true) {
+        if (null != throttle) {
+          throttle.acquire();
+        }
+        int read = channel.read(buffer);
+        if (-1 == read) {
+          break;
+        }
+        checksum.update(buffer.array(), 0, read);
+        buffer.clear();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("verify interrupted: " + filePath);
+    } catch (ZipException e) {
+      // 压缩内容已损坏
+      return false;
+    }
+    return expected == checksum.getValue();
+  }
+
+  private Checksum newChecksum() {
+    return checksumEnabled() ? new PureJavaCrc32C() : null;
+  }
+
+  private static void update(Checksum checksum, ByteBuffer content) {
+    if (content.hasArray()) {
+      checksum.update(content.array(), content.arrayOffset() + content.position(),
+        content.remaining());
+      return;
+    }
+
+    byte[] bytes = new byte[Math.min(STREAM_BUFFER_SIZE, content.remaining())];
+    while (content.hasRemaining()) {
+      int len = Math.min(bytes.length, content.remaining());
+      content.get(bytes, 0, len);
+      checksum.update(bytes, 0, len);
+    }
+  }
+
+  private Path checksumPath(Path absFilePath) {
+    return absFilePath.resolveSibling(absFilePath.getFileName() + CHECKSUM_SUFFIX);
+  }
+
+  /**
+   * 引用计数、校验和编码标记等附属文件
+   */
+  static boolean isSidecar(Path file) {
+    String fileName = file.getFileName().toString();
+    return fileName.endsWith(REF_SUFFIX) || fileName.endsWith(CHECKSUM_SUFFIX)
+      || fileName.endsWith(CODEC_SUFFIX);
+  }
+
+  /**
+   * 文件发布后写入校验文件，崩溃时文件可能缺少校验文件，但不会有错误的校验文件
+   */
+  private void writeChecksum(Path absFilePath, Checksum checksum) throws IOException {
+    if (null == checksum) {
+      return;
+    }
+
+    Path checksumPath = checksumPath(absFilePath);
+    Files.write(checksumPath, String.format("%08x", checksum.getValue())
+      .getBytes(StandardCharsets.US_ASCII));
+    durability().sync(checksumPath);
+  }
+
+  private Long readChecksum(Path absFilePath) throws IOException {
+    Path checksumPath = checksumPath(absFilePath);
+    if (!Files.exists(checksumPath)) {
+      return null;
+    }
+    return Long.parseLong(new String(Files.readAllBytes(checksumPath), StandardCharsets.US_ASCII)
+      .trim(), 16);
+  }
+
+  /**
+   * 按后缀选择写入时的编码，如只压缩json、txt等文本
+   *
+   * @param suffix 文件后缀，不含点，可能为空
+   * @return 编码，null表示不编码，默认不编码
+   */
+  protected FileCodec fileCodec(String suffix) {
+    return null;
+  }
+
+  /**
+   * 根据文件头中的标识选择解码，自定义编码需覆盖
+   *
+   * @param codecId 编码标识
+   * @return 编码
+   * @throws IOException 未知的编码
+   */
+  protected FileCodec fileCodec(byte codecId) throws IOException {
+    if (DeflateFileCodec.ID == codecId) {
+      return new DeflateFileCodec();
+    }
+    throw new IOException("unknown file codec: " + codecId);
+  }
+
+  /**
+   * 编码写入，先跳过文件头，内容写完后回填编码标识和原始长度
+   */
+  private void writeEncoded(FileChannel channel, FileCodec codec, EncodedWriter writer)
+    throws IOException {
+    channel.position(CODEC_HEADER_SIZE);
+    long length;
+    try (OutputStream out = codec.encode(new FilterOutputStream(Channels.newOutputStream(channel)) {
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+      }
+
+      @Override
+      public void close() throws IOException {
+        // 文件头写完后由调用方关闭通道
+        flush();
+      }
+    })) {
+      length = writer.write(out);
+    }
+
+    ByteBuffer header = ByteBuffer.allocate(CODEC_HEADER_SIZE);
+    header.putInt(CODEC_MAGIC).put(codec.id()).put(new byte[3]).putLong(length).flip();
+    while (header.hasRemaining()) {
+      channel.write(header, header.position());
+    }
+  }
+
+  private static long copy(ByteBuffer content, OutputStream out) throws IOException {
+    long length = content.remaining();
+    if (content.hasArray()) {
+      out.write(content.array(), content.arrayOffset() + content.position(), content.remaining());
+      content.position(content.limit());
+      return length;
+    }
+
+    byte[] bytes = new byte[Math.min(STREAM_BUFFER_SIZE, content.remaining())];
+    while (content.hasRemaining()) {
+      int len = Math.min(bytes.length, content.remaining());
+      content.get(bytes, 0, len);
+      out.write(bytes, 0, len);
+    }
+    return length;
+  }
+
+  private static long copy(ReadableByteChannel content, OutputStream out, MessageDigest digest,
+    Checksum checksum) throws IOException {
+    long length = 0;
+    ByteBuffer buffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+    int read;
+    while (-1 != (read = content.read(buffer))) {
+      if (null != digest) {
+        digest.update(buffer.array(), 0, read);
+      }
+      if (null != checksum) {
+        checksum.update(buffer.array(), 0, read);
+      }
+      out.write(buffer.array(), 0, read);
+      length += read;
+      buffer.clear();
+    }
+    return length;
+  }
+
+  private Path codecPath(Path absFilePath) {
+    return absFilePath.resolveSibling(absFilePath.getFileName() + CODEC_SUFFIX);
+  }
+
+  /**
+   * 文件发布前写入编码标记，文件可见时标记已存在；没有文件的标记不影响读取
+   *
+   * @return 是否新建了标记，已存在的标记属于已有的同名文件
+   */
+  private boolean markEncoded(Path absFilePath, FileCodec codec) throws IOException {
+    if (null == codec) {
+      return false;
+    }
+
+    Path codecPath = codecPath(absFilePath);
+    try {
+      Files.createFile(codecPath);
+    } catch (FileAlreadyExistsException e) {
+      return false;
+    }
+    durability().sync(codecPath);
+    return true;
+  }
+
+  /**
+   * 读取编码头，只读取有编码标记的文件
+   *
+   * @return 未编码的文件返回null
+   */
+  private CodecHeader readCodecHeader(Path absFilePath, FileChannel channel)
+    throws IOException {
+    if (!Files.exists(codecPath(absFilePath))) {
+      return null;
+    }
+    if (CODEC_HEADER_SIZE > channel.size()) {
+      return null;
+    }
+
+    ByteBuffer header = ByteBuffer.allocate(CODEC_HEADER_SIZE);
+    while (header.hasRemaining()) {
+      if (-1 == channel.read(header, header.position())) {
+        return null;
+      }
     }
+    header.flip();
+    if (CODEC_MAGIC != header.getInt()) {
+      return null;
+    }
+
+    byte codecId = header.get();
+    if (0 != header.get() || 0 != header.get() || 0 != header.get()) {
+      return null;
+    }
+
+    long length = header.getLong();
+    return 0 > length ? null : new CodecHeader(codecId, length);
+  }
+
+  private InputStream openDecodedStream(FileChannel channel, CodecHeader header)
+    throws IOException {
+    channel.position(CODEC_HEADER_SIZE);
+    return fileCodec(header.codecId).decode(Channels.newInputStream(channel));
+  }
 
-    createDirectories(absDirPath);
+  /**
+   * 临时文件路径，名称唯一，无需检查文件系统
+   */
+  private Path tmpFilePath() throws IOException {
+    Path tmpDir = prefix().resolve(TMP_DIR);
+    createDirectories(tmpDir);
+    return tmpDir.resolve(nextUniqueName("tmp") + ".tmp");
+  }
+
+  private FileChannel openTmpFile(Path tmpFile) throws IOException {
+    try {
+      return FileChannel.open(tmpFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    } catch (NoSuchFileException e) {
+      forgetDirectory(tmpFile.getParent());
+      createDirectories(tmpFile.getParent());
+      return FileChannel.open(tmpFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+  }
 
-    ByteBuffer dupedContent = content.duplicate();
+  /**
+   * 以硬链接发布临时文件，目标已存在时原子地失败；不支持硬链接的文件系统退化为复制，
+   * 同样不覆盖已存在的目标
+   *
+   * @param tmpFile     临时文件，由调用方删除
+   * @param absFilePath 目标路径
+   * @param codec       写入时的编码，null未编码
+   * @throws FileAlreadyExistsException 目标已存在
+   */
+  private void publish(Path tmpFile, Path absFilePath, FileCodec codec) throws IOException {
+    createDirectories(absFilePath.getParent());
+    try {
+      markAndLink(tmpFile, absFilePath, codec);
+    } catch (NoSuchFileException e) {
+      // 缓存的目录已被外部删除
+      forgetDirectory(absFilePath.getParent());
+      createDirectories(absFilePath.getParent());
+      markAndLink(tmpFile, absFilePath, codec);
+    }
+    durability().sync(absFilePath);
+  }
 
-    try (FileChannel channel = new FileOutputStream(absFiePath.toFile())
-      .getChannel()) {
-      channel.write(dupedContent);
+  /**
+   * 先写编码标记再发布，发布失败时删除本次新建的标记
+   */
+  private void markAndLink(Path tmpFile, Path absFilePath, FileCodec codec) throws IOException {
+    boolean marked = markEncoded(absFilePath, codec);
+    try {
+      linkOrCopy(tmpFile, absFilePath);
+    } catch (IOException | RuntimeException e) {
+      if (marked) {
+        Files.deleteIfExists(codecPath(absFilePath));
+      }
+      throw e;
     }
   }
 
+  private void linkOrCopy(Path tmpFile, Path absFilePath) throws IOException {
+    try {
+      Files.createLink(absFilePath, tmpFile);
+    } catch (UnsupportedOperationException e) {
+      Files.copy(tmpFile, absFilePath);
+    } catch (FileAlreadyExistsException | NoSuchFileException | AccessDeniedException e) {
+      throw e;
+    } catch (FileSystemException e) {
+      if (linkSupported(tmpFile)) {
+        throw e;
+      }
+      // 不带REPLACE_EXISTING，目标已存在时失败
+      Files.copy(tmpFile, absFilePath);
+    }
+  }
+
+  /**
+   * 临时文件所在的文件存储是否支持硬链接，如vfat和部分网络文件系统不支持；
+   * 每个文件存储在临时目录中试建一次链接，结果缓存，不依赖随语言环境变化的错误信息
+   *
+   * @param tmpFile 临时文件
+   */
+  private boolean linkSupported(Path tmpFile) throws IOException {
+    FileStore store = Files.getFileStore(tmpFile);
+    Boolean supported = linkSupport.get(store);
+    if (null != supported) {
+      return supported;
+    }
+
+    Path probe = tmpFile.resolveSibling(nextUniqueName("probe") + ".tmp");
+    Path probeLink = tmpFile.resolveSibling(nextUniqueName("probe") + ".tmp");
+    Files.createFile(probe);
+    try {
+      Files.createLink(probeLink, probe);
+      supported = true;
+    } catch (UnsupportedOperationException | FileSystemException e) {
+      LOGGER.warn("hard links are not supported by {}, falling back to copy: {}", store,
+        e.toString());
+      supported = false;
+    } finally {
+      Files.deleteIfExists(probeLink);
+      Files.deleteIfExists(probe);
+    }
+    linkSupport.put(store, supported);
+    return supported;
+  }
+
+  /**
+   * 生成进程内唯一的名称：时间部分-节点-序号
+   *
+   * @param timePart 时间部分
+   * @return 名称
+   */
+  private String nextUniqueName(String timePart) {
+    return timePart + "-" + nodeId() + "-" + Long.toString(NAME_SEQUENCE.incrementAndGet(), 36);
+  }
+
+  /**
+   * 节点标识，写入同一前缀路径的进程需各不相同，默认由进程号和主机名生成
+   *
+   * @return 节点标识，只能包含文件名允许的字符
+   */
+  protected String nodeId() {
+    return DEFAULT_NODE_ID;
+  }
+
   private String concatFileName(String fileNameWithOutSuffix, String suffix) {
     String sep = ".";
     return fileNameWithOutSuffix + sep + (sep.equals(suffix.substring(0, 1)) ? suffix.substring(1)
@@ -129,7 +1330,7 @@ public abstract class AbstractFileService implements FileService {
   public String read(Path filePath, Charset charset) throws IOException {
     Charset actualCharset = null == charset ? Charset.forName("UTF-8") : charset;
 
-    ByteBuffer content = readAllBytes(filePath);
+    ByteBuffer content = read(filePath);
     byte[] strBytes = new byte[content.limit()];
     content.get(strBytes);
     return new String(strBytes, actualCharset);
@@ -137,25 +1338,206 @@ public abstract class AbstractFileService implements FileService {
 
   @Override
   public ByteBuffer read(Path filePath) throws IOException {
-    return readAllBytes(filePath);
+    ByteBuffer content = readAllBytes(filePath);
+    if (verifyChecksumOnRead()) {
+      Long expected = readChecksum(locate(filePath));
+      if (null != expected) {
+        Checksum checksum = new PureJavaCrc32C();
+        update(checksum, content.duplicate());
+        if (expected != checksum.getValue()) {
+          throw new IOException("checksum mismatch: " + filePath);
+        }
+      }
+    }
+    return content;
+  }
+
+  @Override
+  public int read(Path filePath, long offset, ByteBuffer dst) throws IOException {
+    Path absFilePath = locate(filePath);
+    try (FileChannel channel = FileChannel.open(absFilePath, StandardOpenOption.READ)) {
+      CodecHeader header = readCodecHeader(absFilePath, channel);
+      if (null != header) {
+        return (int) readDecoded(channel, header, offset, dst);
+      }
+
+      return readFully(channel, offset, dst);
+    }
+  }
+
+  @Override
+  public long read(Path filePath, long offset, ByteBuffer[] dsts) throws IOException {
+    Path absFilePath = locate(filePath);
+    try (FileChannel channel = FileChannel.open(absFilePath, StandardOpenOption.READ)) {
+      CodecHeader header = readCodecHeader(absFilePath, channel);
+      if (null != header) {
+        return readDecoded(channel, header, offset, dsts);
+      }
+
+      return readFully(channel, offset, dsts);
+    }
+  }
+
+  @Override
+  public ReadableByteChannel openReadChannel(Path filePath) throws IOException {
+    Path absFilePath = locate(filePath);
+    FileChannel channel = FileChannel.open(absFilePath, StandardOpenOption.READ);
+    try {
+      CodecHeader header = readCodecHeader(absFilePath, channel);
+      return null == header ? channel : Channels.newChannel(openDecodedStream(channel, header));
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * 编码的文件返回原始长度
+   */
+  @Override
+  public long size(Path filePath) throws IOException {
+    Path absFilePath = locate(filePath);
+    try (FileChannel channel = FileChannel.open(absFilePath, StandardOpenOption.READ)) {
+      CodecHeader header = readCodecHeader(absFilePath, channel);
+      return null == header ? channel.size() : header.length;
+    }
+  }
+
+  /**
+   * 冷存储的前缀路径，{@link RetentionService}将较早的日期目录移动到此处，读取和删除时
+   * 在前缀路径中找不到的文件再到此处查找
+   *
+   * @return 冷存储前缀路径，null表示没有冷存储，默认没有
+   */
+  protected Path coldPrefix() {
+    return null;
+  }
+
+  /**
+   * 文件的绝对路径，优先前缀路径，都不存在时返回前缀路径下的位置
+   */
+  private Path locate(Path filePath) {
+    Path absFilePath = prefix().resolve(filePath);
+    Path coldPrefix = coldPrefix();
+    if (null == coldPrefix || Files.exists(absFilePath)) {
+      return absFilePath;
+    }
+
+    Path coldFilePath = coldPrefix.resolve(filePath);
+    return Files.exists(coldFilePath) ? coldFilePath : absFilePath;
+  }
+
+  /**
+   * 超过此大小的文件读取时返回只读的内存映射，不占用堆
+   *
+   * @return 字节数
+   */
+  protected long mappedReadThreshold() {
+    return 4 * 1024 * 1024;
   }
 
   private ByteBuffer readAllBytes(Path filePath) throws IOException {
-    int readSizeBatch = 4096;
-    ByteBuffer content = ByteBuffer.allocate(readSizeBatch);
+    Path absFilePath = locate(filePath);
+    try (FileChannel channel = FileChannel.open(absFilePath, StandardOpenOption.READ)) {
+      CodecHeader header = readCodecHeader(absFilePath, channel);
+      if (null != header) {
+        checkReadableSize(filePath, header.length);
+        ByteBuffer content = ByteBuffer.allocate((int) header.length);
+        readDecoded(channel, header, 0, content);
+        content.flip();
+        return content;
+      }
 
-    try(ByteChannel byteChannel = Files.newByteChannel(prefix().resolve(filePath))) {
-      while (0 < byteChannel.read(content) && !content.hasRemaining()) {
-        // extend byte buffer
-        ByteBuffer extendBuffer = ByteBuffer.allocate(content.capacity() + readSizeBatch);
-        content.rewind();
-        extendBuffer.put(content);
-        content = extendBuffer;
+      long size = channel.size();
+      checkReadableSize(filePath, size);
+      if (size >= mappedReadThreshold()) {
+        return channel.map(MapMode.READ_ONLY, 0, size);
       }
+
+      // 按文件大小一次分配，读取期间文件变大时只读取打开时的大小
+      ByteBuffer content = ByteBuffer.allocate((int) size);
+      readFully(channel, 0, content);
+      content.flip();
+      return content;
     }
+  }
 
-    content.limit(content.position());
-    content.rewind();
-    return content;
+  /**
+   * 整个读取的内容放在一个ByteBuffer中，堆内存和内存映射都不能超过{@link Integer#MAX_VALUE}
+   */
+  private static void checkReadableSize(Path filePath, long size) throws IOException {
+    if (Integer.MAX_VALUE < size) {
+      throw new IOException("file too large to read into a single buffer, use "
+        + "openReadChannel or ranged reads: " + filePath + ", " + size);
+    }
+  }
+
+  /**
+   * 解码后从指定位置读取，需从头解码跳过偏移
+   */
+  private long readDecoded(FileChannel channel, CodecHeader header, long offset,
+    ByteBuffer... dsts) throws IOException {
+    if (offset >= header.length) {
+      return hasRemaining(dsts) ? -1 : 0;
+    }
+
+    try (InputStream in = openDecodedStream(channel, header)) {
+      long skipped = 0;
+      while (skipped < offset) {
+        long n = in.skip(offset - skipped);
+        if (0 >= n) {
+          throw new EOFException("unexpected end of encoded file");
+        }
+        skipped += n;
+      }
+
+      long remaining = 0;
+      for (ByteBuffer dst : dsts) {
+        remaining += dst.remaining();
+      }
+      byte[] bytes = new byte[(int) Math.min(remaining, STREAM_BUFFER_SIZE)];
+      long total = 0;
+      for (ByteBuffer dst : dsts) {
+        int read;
+        while (dst.hasRemaining()
+          && -1 != (read = in.read(bytes, 0, Math.min(bytes.length, dst.remaining())))) {
+          dst.put(bytes, 0, read);
+          total += read;
+        }
+      }
+      return total;
+    }
+  }
+
+  @FunctionalInterface
+  private interface EncodedWriter {
+
+    /**
+     * @return 原始字节数
+     */
+    long write(OutputStream out) throws IOException;
+  }
+
+  private static final class CodecHeader {
+
+    private final byte codecId;
+    private final long length;
+
+    private CodecHeader(byte codecId, long length) {
+      this.codecId = codecId;
+      this.length = length;
+    }
+  }
+
+  private static final class DatePath {
+
+    private final LocalDate day;
+    private final Path relativeDirPath;
+
+    private DatePath(LocalDate day) {
+      this.day = day;
+      this.relativeDirPath = Paths.get(String.format("%04d", day.getYear()),
+        String.format("%02d", day.getMonthValue()), String.format("%02d", day.getDayOfMonth()));
+    }
   }
 }
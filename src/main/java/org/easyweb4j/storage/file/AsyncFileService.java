@@ -0,0 +1,61 @@
+package org.easyweb4j.storage.file;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步文件服务，调用立即返回，存储的延迟不占用请求线程
+ * <p>
+ * 方法语义同{@link FileService}中的同名方法，失败时future以原异常结束；
+ * 超出排队上限时future以{@link java.util.concurrent.RejectedExecutionException}结束
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public interface AsyncFileService extends AutoCloseable {
+
+  /**
+   * @see FileService#storeFileUsingDate(ByteBuffer, String, String)
+   */
+  CompletableFuture<Path> storeFileUsingDate(ByteBuffer content, String fileName, String suffix);
+
+  /**
+   * @see FileService#storeFileUsingHash(ByteBuffer, String, String)
+   */
+  CompletableFuture<Path> storeFileUsingHash(ByteBuffer content, String fileName, String suffix);
+
+  /**
+   * @see FileService#storeFileUsingContent(ByteBuffer, String)
+   */
+  CompletableFuture<Path> storeFileUsingContent(ByteBuffer content, String suffix);
+
+  /**
+   * @see FileService#delete(Path)
+   */
+  CompletableFuture<Boolean> delete(Path filePath);
+
+  /**
+   * @see FileService#read(Path, Charset)
+   */
+  CompletableFuture<String> read(Path filePath, Charset charset);
+
+  /**
+   * @see FileService#read(Path)
+   */
+  CompletableFuture<ByteBuffer> read(Path filePath);
+
+  /**
+   * 完成前调用方不能使用目标缓冲
+   *
+   * @see FileService#read(Path, long, ByteBuffer)
+   */
+  CompletableFuture<Integer> read(Path filePath, long offset, ByteBuffer dst);
+
+  /**
+   * @see FileService#size(Path)
+   */
+  CompletableFuture<Long> size(Path filePath);
+}
@@ -0,0 +1,386 @@
+package org.easyweb4j.storage.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 带读缓存的文件服务，热点文件直接从内存读取
+ * <p>
+ * 按字节数限制容量，淘汰使用分段LRU：新读取的文件进入试用段，再次命中后晋升到保护段，
+ * 保护段超出容量时降级回试用段，只从试用段淘汰，一次性的扫描读取不会冲掉热点文件。
+ * 超过单个文件上限的不缓存；可选将缓存内容放在堆外。写入和删除时失效对应的缓存
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class CachingFileService extends ForwardingFileService {
+
+  /**
+   * 保护段占总容量的比例
+   */
+  private static final double PROTECTED_RATIO = 0.8;
+
+  private final long maximumBytes;
+  private final long maximumEntryBytes;
+  private final long protectedMaximumBytes;
+  private final boolean offHeap;
+
+  private final Object lock = new Object();
+  private final LinkedHashMap<Path, ByteBuffer> probationSegment =
+    new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<Path, ByteBuffer> protectedSegment =
+    new LinkedHashMap<>(16, 0.75f, true);
+  private long probationBytes;
+  private long protectedBytes;
+
+  /**
+   * 正在从被装饰的服务加载的文件及加载的代次，失效时移除，加载完成时代次未变才放入缓存
+   */
+  private final Map<Path, Long> loadingGenerations = new HashMap<>();
+  private long generation;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  /**
+   * @param delegate          被装饰的文件服务
+   * @param maximumBytes      缓存总字节数上限
+   * @param maximumEntryBytes 单个文件字节数上限，超过的不缓存
+   * @param offHeap           true缓存内容放在堆外
+   */
+  public CachingFileService(FileService delegate, long maximumBytes, long maximumEntryBytes,
+    boolean offHeap) {
+    super(delegate);
+    if (1 > maximumBytes || 1 > maximumEntryBytes) {
+      throw new IllegalArgumentException(
+        "maximumBytes and maximumEntryBytes must be positive: " + maximumBytes + ", "
+          + maximumEntryBytes);
+    }
+
+    this.maximumBytes = maximumBytes;
+    this.maximumEntryBytes = Math.min(maximumEntryBytes, maximumBytes);
+    this.protectedMaximumBytes = (long) (maximumBytes * PROTECTED_RATIO);
+    this.offHeap = offHeap;
+  }
+
+  /**
+   * 单个文件上限为总容量的1/8，缓存放在堆内
+   *
+   * @param delegate     被装饰的文件服务
+   * @param maximumBytes 缓存总字节数上限
+   */
+  public CachingFileService(FileService delegate, long maximumBytes) {
+    this(delegate, maximumBytes, Math.max(1, maximumBytes / 8), false);
+  }
+
+  @Override
+  public Path storeFileUsingDate(ByteBuffer content, String fileName, String suffix)
+    throws IOException {
+    return invalidated(super.storeFileUsingDate(content, fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingHash(ByteBuffer content, String fileName, String suffix)
+    throws IOException {
+    return invalidated(super.storeFileUsingHash(content, fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingDate(ReadableByteChannel content, String fileName, String suffix)
+    throws IOException {
+    return invalidated(super.storeFileUsingDate(content, fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingHash(ReadableByteChannel content, String fileName, String suffix)
+    throws IOException {
+    return invalidated(super.storeFileUsingHash(content, fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingDate(ByteBuffer[] contents, String fileName, String suffix)
+    throws IOException {
+    return invalidated(super.storeFileUsingDate(contents, fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingHash(ByteBuffer[] contents, String fileName, String suffix)
+    throws IOException {
+    return invalidated(super.storeFileUsingHash(contents, fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingContent(ByteBuffer content, String suffix) throws IOException {
+    return invalidated(super.storeFileUsingContent(content, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingContent(ReadableByteChannel content, String suffix)
+    throws IOException {
+    return invalidated(super.storeFileUsingContent(content, suffix));
+  }
+
+  /**
+   * 删除前后都失效，删除期间并发读取加载的旧内容不会留在缓存中
+   */
+  @Override
+  public boolean delete(Path filePath) throws IOException {
+    invalidate(filePath);
+    try {
+      return super.delete(filePath);
+    } finally {
+      invalidate(filePath);
+    }
+  }
+
+  @Override
+  public String read(Path filePath, Charset charset) throws IOException {
+    ByteBuffer content = read(filePath);
+    Charset actualCharset = null == charset ? Charset.forName("UTF-8") : charset;
+    return actualCharset.decode(content).toString();
+  }
+
+  /**
+   * 命中时返回缓存内容的只读视图，调用方可以自由修改位置
+   */
+  @Override
+  public ByteBuffer read(Path filePath) throws IOException {
+    ByteBuffer content = getIfPresent(filePath, true);
+    if (null != content) {
+      return content;
+    }
+
+    long loadGeneration = beginLoad(filePath);
+    try {
+      content = super.read(filePath);
+    } catch (IOException | RuntimeException e) {
+      endLoad(filePath, loadGeneration, null);
+      throw e;
+    }
+    if (content.remaining() > maximumEntryBytes) {
+      endLoad(filePath, loadGeneration, null);
+      return content;
+    }
+
+    ByteBuffer cached = offHeap ? ByteBuffer.allocateDirect(content.remaining())
+      : ByteBuffer.allocate(content.remaining());
+    cached.put(content.duplicate()).flip();
+    endLoad(filePath, loadGeneration, cached);
+    return cached.asReadOnlyBuffer();
+  }
+
+  @Override
+  public int read(Path filePath, long offset, ByteBuffer dst) throws IOException {
+    ByteBuffer content = getIfPresent(filePath, false);
+    if (null == content) {
+      return super.read(filePath, offset, dst);
+    }
+
+    if (offset >= content.limit()) {
+      return dst.hasRemaining() ? -1 : 0;
+    }
+
+    content.position((int) offset);
+    content.limit(Math.min(content.limit(), content.position() + dst.remaining()));
+    int read = content.remaining();
+    dst.put(content);
+    return read;
+  }
+
+  @Override
+  public long read(Path filePath, long offset, ByteBuffer[] dsts) throws IOException {
+    ByteBuffer content = getIfPresent(filePath, false);
+    if (null == content) {
+      return super.read(filePath, offset, dsts);
+    }
+
+    if (offset >= content.limit()) {
+      for (ByteBuffer dst : dsts) {
+        if (dst.hasRemaining()) {
+          return -1;
+        }
+      }
+      return 0;
+    }
+
+    content.position((int) offset);
+    long total = 0;
+    for (ByteBuffer dst : dsts) {
+      ByteBuffer slice = content.duplicate();
+      slice.limit(Math.min(content.limit(), content.position() + dst.remaining()));
+      total += slice.remaining();
+      content.position(slice.limit());
+      dst.put(slice);
+    }
+    return total;
+  }
+
+  @Override
+  public long size(Path filePath) throws IOException {
+    ByteBuffer content = getIfPresent(filePath, false);
+    return null == content ? super.size(filePath) : content.remaining();
+  }
+
+  /**
+   * 使缓存失效，文件在服务之外被修改时调用
+   *
+   * @param filePath 文件相对路径
+   */
+  public void invalidate(Path filePath) {
+    synchronized (lock) {
+      loadingGenerations.remove(filePath);
+      ByteBuffer removed = probationSegment.remove(filePath);
+      if (null != removed) {
+        probationBytes -= removed.capacity();
+      }
+
+      removed = protectedSegment.remove(filePath);
+      if (null != removed) {
+        protectedBytes -= removed.capacity();
+      }
+    }
+  }
+
+  private Path invalidated(Path filePath) {
+    invalidate(filePath);
+    return filePath;
+  }
+
+  public void invalidateAll() {
+    synchronized (lock) {
+      loadingGenerations.clear();
+      probationSegment.clear();
+      protectedSegment.clear();
+      probationBytes = 0;
+      protectedBytes = 0;
+    }
+  }
+
+  public long hitCount() {
+    return hitCount.sum();
+  }
+
+  public long missCount() {
+    return missCount.sum();
+  }
+
+  public long evictionCount() {
+    return evictionCount.sum();
+  }
+
+  /**
+   * 当前缓存的字节数
+   */
+  public long cachedBytes() {
+    synchronized (lock) {
+      return probationBytes + protectedBytes;
+    }
+  }
+
+  /**
+   * 查找缓存，命中时试用段晋升到保护段
+   *
+   * @param filePath   文件相对路径
+   * @param recordMiss 未命中时是否计数，未命中不加载的调用不计
+   * @return 只读视图，未命中返回null
+   */
+  private ByteBuffer getIfPresent(Path filePath, boolean recordMiss) {
+    synchronized (lock) {
+      ByteBuffer content = protectedSegment.get(filePath);
+      if (null == content) {
+        content = probationSegment.remove(filePath);
+        if (null != content) {
+          probationBytes -= content.capacity();
+          protectedSegment.put(filePath, content);
+          protectedBytes += content.capacity();
+          demoteProtected();
+        }
+      }
+
+      if (null == content) {
+        if (recordMiss) {
+          missCount.increment();
+        }
+        return null;
+      }
+
+      hitCount.increment();
+      return content.asReadOnlyBuffer();
+    }
+  }
+
+  private long beginLoad(Path filePath) {
+    synchronized (lock) {
+      long loadGeneration = ++generation;
+      loadingGenerations.put(filePath, loadGeneration);
+      return loadGeneration;
+    }
+  }
+
+  /**
+   * 加载期间未失效，且没有更晚开始的加载时放入缓存
+   *
+   * @param content 加载的内容，null只结束加载
+   */
+  private void endLoad(Path filePath, long loadGeneration, ByteBuffer content) {
+    synchronized (lock) {
+      Long current = loadingGenerations.get(filePath);
+      if (null == current || loadGeneration != current) {
+        return;
+      }
+      loadingGenerations.remove(filePath);
+
+      // 并发读取同一文件时只保留一份
+      if (null == content || protectedSegment.containsKey(filePath)
+        || probationSegment.containsKey(filePath)) {
+        return;
+      }
+
+      probationSegment.put(filePath, content);
+      probationBytes += content.capacity();
+      evict();
+    }
+  }
+
+  /**
+   * 保护段超出容量时，最久未访问的降级到试用段
+   */
+  private void demoteProtected() {
+    Iterator<Entry<Path, ByteBuffer>> iterator = protectedSegment.entrySet().iterator();
+    while (protectedBytes > protectedMaximumBytes && iterator.hasNext()) {
+      Entry<Path, ByteBuffer> eldest = iterator.next();
+      iterator.remove();
+      protectedBytes -= eldest.getValue().capacity();
+      probationSegment.put(eldest.getKey(), eldest.getValue());
+      probationBytes += eldest.getValue().capacity();
+    }
+    evict();
+  }
+
+  private void evict() {
+    Iterator<Entry<Path, ByteBuffer>> iterator = probationSegment.entrySet().iterator();
+    while (probationBytes + protectedBytes > maximumBytes && iterator.hasNext()) {
+      probationBytes -= iterator.next().getValue().capacity();
+      iterator.remove();
+      evictionCount.increment();
+    }
+
+    iterator = protectedSegment.entrySet().iterator();
+    while (probationBytes + protectedBytes > maximumBytes && iterator.hasNext()) {
+      protectedBytes -= iterator.next().getValue().capacity();
+      iterator.remove();
+      evictionCount.increment();
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package org.easyweb4j.storage.file;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.easyweb4j.concurrent.BoundedExecutors;
+
+/**
+ * 在有界的I/O线程池上执行同步文件服务，每块磁盘使用一个实例，线程数即该磁盘的并发上限
+ * <p>
+ * 不使用AsynchronousFileChannel：Linux上它同样由线程池模拟，且会绕开被包装服务的目录布局、
+ * 去重和缓存等逻辑
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class DefaultAsyncFileService implements AsyncFileService {
+
+  private final FileService fileService;
+  private final ExecutorService executorService;
+  private final boolean ownExecutor;
+
+  /**
+   * @param fileService      同步文件服务
+   * @param concurrency      同时进行的I/O数量
+   * @param maximumQueueSize 排队上限，超出时拒绝
+   */
+  public DefaultAsyncFileService(FileService fileService, int concurrency,
+    int maximumQueueSize) {
+    this(fileService, BoundedExecutors.newBoundedExecutorService(maximumQueueSize, concurrency,
+      "async-file", Thread.NORM_PRIORITY), true);
+  }
+
+  /**
+   * 使用调用方的线程池，关闭时不关闭线程池
+   *
+   * @param fileService     同步文件服务
+   * @param executorService 线程池
+   */
+  public DefaultAsyncFileService(FileService fileService, ExecutorService executorService) {
+    this(fileService, executorService, false);
+  }
+
+  private DefaultAsyncFileService(FileService fileService, ExecutorService executorService,
+    boolean ownExecutor) {
+    if (null == fileService || null == executorService) {
+      throw new IllegalArgumentException("fileService and executorService must not be null");
+    }
+
+    this.fileService = fileService;
+    this.executorService = executorService;
+    this.ownExecutor = ownExecutor;
+  }
+
+  @Override
+  public CompletableFuture<Path> storeFileUsingDate(ByteBuffer content, String fileName,
+    String suffix) {
+    return submit(() -> fileService.storeFileUsingDate(content, fileName, suffix));
+  }
+
+  @Override
+  public CompletableFuture<Path> storeFileUsingHash(ByteBuffer content, String fileName,
+    String suffix) {
+    return submit(() -> fileService.storeFileUsingHash(content, fileName, suffix));
+  }
+
+  @Override
+  public CompletableFuture<Path> storeFileUsingContent(ByteBuffer content, String suffix) {
+    return submit(() -> fileService.storeFileUsingContent(content, suffix));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> delete(Path filePath) {
+    return submit(() -> fileService.delete(filePath));
+  }
+
+  @Override
+  public CompletableFuture<String> read(Path filePath, Charset charset) {
+    return submit(() -> fileService.read(filePath, charset));
+  }
+
+  @Override
+  public CompletableFuture<ByteBuffer> read(Path filePath) {
+    return submit(() -> fileService.read(filePath));
+  }
+
+  @Override
+  public CompletableFuture<Integer> read(Path filePath, long offset, ByteBuffer dst) {
+    return submit(() -> fileService.read(filePath, offset, dst));
+  }
+
+  @Override
+  public CompletableFuture<Long> size(Path filePath) {
+    return submit(() -> fileService.size(filePath));
+  }
+
+  /**
+   * 等待已提交的I/O完成后关闭自建的线程池
+   */
+  @Override
+  public void close() throws Exception {
+    if (!ownExecutor) {
+      return;
+    }
+
+    executorService.shutdown();
+    executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+  }
+
+  private <T> CompletableFuture<T> submit(IoTask<T> task) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      executorService.execute(() -> {
+        try {
+          future.complete(task.call());
+        } catch (Throwable e) {
+          future.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  @FunctionalInterface
+  private interface IoTask<T> {
+
+    T call() throws Exception;
+  }
+}
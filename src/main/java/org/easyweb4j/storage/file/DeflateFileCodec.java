@@ -0,0 +1,78 @@
+package org.easyweb4j.storage.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 基于JDK Deflater的压缩编码，解码与压缩级别无关
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class DeflateFileCodec implements FileCodec {
+
+  public static final byte ID = 1;
+
+  private static final int BUFFER_SIZE = 16 * 1024;
+
+  private final int level;
+
+  /**
+   * @param level 压缩级别，0~9，越大压缩率越高，速度越慢
+   */
+  public DeflateFileCodec(int level) {
+    if (Deflater.NO_COMPRESSION > level || Deflater.BEST_COMPRESSION < level) {
+      throw new IllegalArgumentException("level must be in [0, 9]: " + level);
+    }
+    this.level = level;
+  }
+
+  /**
+   * 默认级别偏重速度
+   */
+  public DeflateFileCodec() {
+    this(Deflater.BEST_SPEED);
+  }
+
+  @Override
+  public byte id() {
+    return ID;
+  }
+
+  @Override
+  public OutputStream encode(OutputStream out) {
+    Deflater deflater = new Deflater(level);
+    return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          // 自带的Deflater不会随流释放
+          deflater.end();
+        }
+      }
+    };
+  }
+
+  @Override
+  public InputStream decode(InputStream in) {
+    Inflater inflater = new Inflater();
+    return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          inflater.end();
+        }
+      }
+    };
+  }
+}
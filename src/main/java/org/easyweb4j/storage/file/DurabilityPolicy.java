@@ -0,0 +1,196 @@
+package org.easyweb4j.storage.file;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 写入文件后的持久化策略，决定何时将文件内容和所在目录刷到磁盘
+ * <p>
+ * 组提交时并发的写入者在同一批次中等待，由其中一个线程依次刷新批次内的文件，
+ * 相同目录只刷新一次，文件系统日志也随之合并提交；不依赖后台线程
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public abstract class DurabilityPolicy {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DurabilityPolicy.class);
+
+  private static final DurabilityPolicy NONE = new DurabilityPolicy() {
+    @Override
+    public void sync(Path absFilePath) {
+    }
+  };
+
+  private static final DurabilityPolicy PER_WRITE = new DurabilityPolicy() {
+    @Override
+    public void sync(Path absFilePath) throws IOException {
+      forceFile(absFilePath);
+      forceDirectory(absFilePath.getParent());
+    }
+  };
+
+  /**
+   * 不刷盘，由操作系统决定，崩溃时可能丢失最近写入的文件
+   */
+  public static DurabilityPolicy none() {
+    return NONE;
+  }
+
+  /**
+   * 每个文件写入后立即刷新文件和目录
+   */
+  public static DurabilityPolicy perWrite() {
+    return PER_WRITE;
+  }
+
+  /**
+   * 组提交，每个实例维护自己的批次，需在服务内复用
+   *
+   * @param maxDelay 批次最长等待时间
+   * @param unit     时间单位
+   * @param maxFiles 批次达到此数量时立即刷新
+   * @return 策略
+   */
+  public static DurabilityPolicy groupCommit(long maxDelay, TimeUnit unit, int maxFiles) {
+    return new GroupCommitPolicy(unit.toNanos(maxDelay), maxFiles);
+  }
+
+  /**
+   * 文件已写入并关闭，返回时按策略保证文件及目录项已持久化
+   *
+   * @param absFilePath 文件绝对路径
+   * @throws IOException
+   */
+  public abstract void sync(Path absFilePath) throws IOException;
+
+  static void forceFile(Path absFilePath) throws IOException {
+    try (FileChannel channel = FileChannel.open(absFilePath, StandardOpenOption.READ)) {
+      channel.force(true);
+    }
+  }
+
+  /**
+   * 部分平台(如windows)不能打开目录，跳过
+   */
+  static void forceDirectory(Path absDirPath) {
+    try (FileChannel channel = FileChannel.open(absDirPath, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      LOGGER.debug("skip directory force: {}", absDirPath, e);
+    }
+  }
+
+  private static final class GroupCommitPolicy extends DurabilityPolicy {
+
+    private final long maxDelayNanos;
+    private final int maxFiles;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchChanged = lock.newCondition();
+    private Batch pending = new Batch();
+    private boolean flushing;
+
+    private GroupCommitPolicy(long maxDelayNanos, int maxFiles) {
+      if (0 > maxDelayNanos || 1 > maxFiles) {
+        throw new IllegalArgumentException(
+          "invalid maxDelay or maxFiles: " + maxDelayNanos + ", " + maxFiles);
+      }
+
+      this.maxDelayNanos = maxDelayNanos;
+      this.maxFiles = maxFiles;
+    }
+
+    @Override
+    public void sync(Path absFilePath) throws IOException {
+      Batch batch;
+      lock.lock();
+      try {
+        batch = pending;
+        if (batch.files.isEmpty()) {
+          batch.deadlineNanos = System.nanoTime() + maxDelayNanos;
+        }
+        batch.files.add(absFilePath);
+        if (batch.files.size() >= maxFiles) {
+          batchChanged.signalAll();
+        }
+
+        // 批次满或到期后由第一个醒来的线程负责刷新
+        while (!batch.done) {
+          long remaining = batch.deadlineNanos - System.nanoTime();
+          if (!flushing && batch == pending
+            && (batch.files.size() >= maxFiles || 0 >= remaining)) {
+            flushing = true;
+            pending = new Batch();
+            break;
+          }
+
+          if (flushing || 0 >= remaining) {
+            batchChanged.await();
+          } else {
+            batchChanged.awaitNanos(remaining);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("interrupted while waiting for group commit", e);
+      } finally {
+        lock.unlock();
+      }
+
+      if (!batch.done) {
+        flush(batch);
+      }
+
+      if (null != batch.error) {
+        throw new IOException("group commit failed", batch.error);
+      }
+    }
+
+    private void flush(Batch batch) {
+      IOException error = null;
+      Set<Path> dirs = new LinkedHashSet<>();
+      for (Path file : batch.files) {
+        try {
+          forceFile(file);
+          dirs.add(file.getParent());
+        } catch (IOException e) {
+          error = e;
+        }
+      }
+      for (Path dir : dirs) {
+        forceDirectory(dir);
+      }
+
+      lock.lock();
+      try {
+        batch.error = error;
+        batch.done = true;
+        flushing = false;
+        batchChanged.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private static final class Batch {
+
+    private final List<Path> files = new ArrayList<>();
+    private long deadlineNanos;
+    private boolean done;
+    private IOException error;
+  }
+}
@@ -0,0 +1,40 @@
+package org.easyweb4j.storage.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 文件编码，如压缩。编码后的文件带有记录编码标识和原始长度的文件头，读取时自动解码
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public interface FileCodec {
+
+  /**
+   * 编码标识，写入文件头，读取时据此选择解码
+   *
+   * @return 标识，1~127为内置编码保留
+   */
+  byte id();
+
+  /**
+   * 包装输出流，关闭返回的流时需结束编码并关闭被包装的流
+   *
+   * @param out 被包装的流
+   * @return 编码流
+   * @throws IOException
+   */
+  OutputStream encode(OutputStream out) throws IOException;
+
+  /**
+   * 包装输入流，关闭返回的流时需关闭被包装的流
+   *
+   * @param in 被包装的流
+   * @return 解码流
+   * @throws IOException
+   */
+  InputStream decode(InputStream in) throws IOException;
+}
@@ -1,13 +1,18 @@
 package org.easyweb4j.storage.file;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 public interface FileService {
   /**
-   * 根据时间存储文件，生成目录**yyyy/MM/dd**, 文件名可选，默认为HHmmssSSS.{suffix}
+   * 根据时间存储文件，生成目录**yyyy/MM/dd**, 文件名可选，默认为{@code HHmmssSSS-<node>-<seq36>.{suffix}}
    *
    * @param content  文件内容
    * @param fileName 文件名，可选
@@ -27,6 +32,148 @@ public interface FileService {
    */
   Path storeFileUsingHash(ByteBuffer content, String fileName, String suffix) throws IOException;
 
+  /**
+   * 根据时间存储文件，流式写入，内存占用与文件大小无关
+   *
+   * @param content  文件内容，读到末尾为止，不负责关闭
+   * @param fileName 文件名，可选
+   * @param suffix   文件后缀
+   * @return 相对路径
+   * @throws IOException
+   * @see #storeFileUsingDate(ByteBuffer, String, String)
+   */
+  Path storeFileUsingDate(ReadableByteChannel content, String fileName, String suffix)
+    throws IOException;
+
+  /**
+   * 根据hash值存储文件，流式写入，内存占用与文件大小无关
+   *
+   * @param content  文件内容，读到末尾为止，不负责关闭
+   * @param fileName 文件名，可选
+   * @param suffix   文件后缀
+   * @return 相对路径
+   * @throws IOException
+   * @see #storeFileUsingHash(ByteBuffer, String, String)
+   */
+  Path storeFileUsingHash(ReadableByteChannel content, String fileName, String suffix)
+    throws IOException;
+
+  /**
+   * 根据时间存储由多段组成的文件，如头、正文、尾，按顺序写入，调用方无需先合并；默认合并后写入
+   *
+   * @param contents 文件内容的各段
+   * @param fileName 文件名，可选
+   * @param suffix   文件后缀
+   * @return 相对路径
+   * @throws IOException
+   * @see #storeFileUsingDate(ByteBuffer, String, String)
+   */
+  default Path storeFileUsingDate(ByteBuffer[] contents, String fileName, String suffix)
+    throws IOException {
+    long length = 0;
+    for (ByteBuffer content : contents) {
+      length += content.remaining();
+    }
+    ByteBuffer merged = ByteBuffer.allocate(Math.toIntExact(length));
+    for (ByteBuffer content : contents) {
+      merged.put(content.duplicate());
+    }
+    merged.flip();
+    return storeFileUsingDate(merged, fileName, suffix);
+  }
+
+  /**
+   * 根据hash值存储由多段组成的文件，默认合并后写入
+   *
+   * @param contents 文件内容的各段
+   * @param fileName 文件名，可选
+   * @param suffix   文件后缀
+   * @return 相对路径
+   * @throws IOException
+   * @see #storeFileUsingHash(ByteBuffer, String, String)
+   */
+  default Path storeFileUsingHash(ByteBuffer[] contents, String fileName, String suffix)
+    throws IOException {
+    long length = 0;
+    for (ByteBuffer content : contents) {
+      length += content.remaining();
+    }
+    ByteBuffer merged = ByteBuffer.allocate(Math.toIntExact(length));
+    for (ByteBuffer content : contents) {
+      merged.put(content.duplicate());
+    }
+    merged.flip();
+    return storeFileUsingHash(merged, fileName, suffix);
+  }
+
+  /**
+   * 按内容寻址存储文件，生成目录**sha256[0:2]/sha256[2:4]**，文件名为内容的sha256值。
+   * 相同内容只存储一份并增加引用计数，返回相同的路径
+   *
+   * @param content 文件内容
+   * @param suffix  文件后缀
+   * @return 相对路径
+   * @throws IOException
+   */
+  Path storeFileUsingContent(ByteBuffer content, String suffix) throws IOException;
+
+  /**
+   * 按内容寻址存储文件，流式计算hash
+   *
+   * @param content 文件内容，读到末尾为止，不负责关闭
+   * @param suffix  文件后缀
+   * @return 相对路径
+   * @throws IOException
+   * @see #storeFileUsingContent(ByteBuffer, String)
+   */
+  Path storeFileUsingContent(ReadableByteChannel content, String suffix) throws IOException;
+
+  default Path storeFileUsingContent(InputStream content, String suffix) throws IOException {
+    return storeFileUsingContent(Channels.newChannel(content), suffix);
+  }
+
+  /**
+   * 删除文件，按内容寻址存储的文件减少一次引用，引用为0时删除
+   *
+   * @param filePath 文件相对路径
+   * @return true文件存在
+   * @throws IOException
+   */
+  boolean delete(Path filePath) throws IOException;
+
+  default Path storeFileUsingDate(InputStream content, String fileName, String suffix)
+    throws IOException {
+    return storeFileUsingDate(Channels.newChannel(content), fileName, suffix);
+  }
+
+  default Path storeFileUsingHash(InputStream content, String fileName, String suffix)
+    throws IOException {
+    return storeFileUsingHash(Channels.newChannel(content), fileName, suffix);
+  }
+
+  /**
+   * 根据时间存储已有的文件，文件间直接传输
+   *
+   * @param source   源文件
+   * @param fileName 文件名，可选
+   * @param suffix   文件后缀
+   * @return 相对路径
+   * @throws IOException
+   */
+  default Path storeFileUsingDate(Path source, String fileName, String suffix)
+    throws IOException {
+    try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+      return storeFileUsingDate(channel, fileName, suffix);
+    }
+  }
+
+  default Path storeFileUsingHash(Path source, String fileName, String suffix)
+    throws IOException {
+    try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+      return storeFileUsingHash(channel, fileName, suffix);
+    }
+  }
+
   /**
    * 读取文件全部内容
    *
@@ -38,11 +185,76 @@ public interface FileService {
   String read(Path filePath, Charset charset) throws IOException;
 
   /**
-   * 读取文件成字节
+   * 读取文件成字节，大文件返回只读的内存映射
    *
    * @param filePath 文件相对路径
    * @return 字节
    * @throws IOException
    */
   ByteBuffer read(Path filePath) throws IOException;
+
+  /**
+   * 从指定位置读取文件到调用方提供的缓冲
+   *
+   * @param filePath 文件相对路径
+   * @param offset   文件偏移
+   * @param dst      目标缓冲，最多读取remaining个字节
+   * @return 读取的字节数，-1表示已到文件末尾
+   * @throws IOException
+   */
+  int read(Path filePath, long offset, ByteBuffer dst) throws IOException;
+
+  /**
+   * 从指定位置依次读取文件到调用方提供的多个缓冲，如分别读取头和正文；默认逐个缓冲读取
+   *
+   * @param filePath 文件相对路径
+   * @param offset   文件偏移
+   * @param dsts     目标缓冲，前一个读满后再读下一个
+   * @return 读取的字节数，-1表示已到文件末尾
+   * @throws IOException
+   */
+  default long read(Path filePath, long offset, ByteBuffer[] dsts) throws IOException {
+    long total = 0;
+    for (ByteBuffer dst : dsts) {
+      while (dst.hasRemaining()) {
+        int read = read(filePath, offset + total, dst);
+        if (0 >= read) {
+          return 0 == total && 0 > read ? -1 : total;
+        }
+        total += read;
+      }
+    }
+    return total;
+  }
+
+  /**
+   * 打开文件用于流式读取，由调用方关闭
+   *
+   * @param filePath 文件相对路径
+   * @return 通道
+   * @throws IOException
+   */
+  ReadableByteChannel openReadChannel(Path filePath) throws IOException;
+
+  default InputStream openInputStream(Path filePath) throws IOException {
+    return Channels.newInputStream(openReadChannel(filePath));
+  }
+
+  /**
+   * 校验文件内容与写入时记录的校验和是否一致
+   *
+   * @param filePath 文件相对路径
+   * @return false文件已损坏，未记录校验和的文件视为一致
+   * @throws IOException
+   */
+  boolean verify(Path filePath) throws IOException;
+
+  /**
+   * 文件大小
+   *
+   * @param filePath 文件相对路径
+   * @return 字节数
+   * @throws IOException
+   */
+  long size(Path filePath) throws IOException;
 }
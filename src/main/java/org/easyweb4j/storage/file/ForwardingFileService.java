@@ -0,0 +1,117 @@
+package org.easyweb4j.storage.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+/**
+ * 转发所有调用到被装饰的文件服务，装饰器继承后只需覆盖关心的方法
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public abstract class ForwardingFileService implements FileService {
+
+  private final FileService delegate;
+
+  protected ForwardingFileService(FileService delegate) {
+    if (null == delegate) {
+      throw new IllegalArgumentException("delegate must not be null");
+    }
+    this.delegate = delegate;
+  }
+
+  protected FileService delegate() {
+    return delegate;
+  }
+
+  @Override
+  public Path storeFileUsingDate(ByteBuffer content, String fileName, String suffix)
+    throws IOException {
+    return delegate.storeFileUsingDate(content, fileName, suffix);
+  }
+
+  @Override
+  public Path storeFileUsingHash(ByteBuffer content, String fileName, String suffix)
+    throws IOException {
+    return delegate.storeFileUsingHash(content, fileName, suffix);
+  }
+
+  @Override
+  public Path storeFileUsingDate(ReadableByteChannel content, String fileName, String suffix)
+    throws IOException {
+    return delegate.storeFileUsingDate(content, fileName, suffix);
+  }
+
+  @Override
+  public Path storeFileUsingHash(ReadableByteChannel content, String fileName, String suffix)
+    throws IOException {
+    return delegate.storeFileUsingHash(content, fileName, suffix);
+  }
+
+  @Override
+  public Path storeFileUsingDate(ByteBuffer[] contents, String fileName, String suffix)
+    throws IOException {
+    return delegate.storeFileUsingDate(contents, fileName, suffix);
+  }
+
+  @Override
+  public Path storeFileUsingHash(ByteBuffer[] contents, String fileName, String suffix)
+    throws IOException {
+    return delegate.storeFileUsingHash(contents, fileName, suffix);
+  }
+
+  @Override
+  public Path storeFileUsingContent(ByteBuffer content, String suffix) throws IOException {
+    return delegate.storeFileUsingContent(content, suffix);
+  }
+
+  @Override
+  public Path storeFileUsingContent(ReadableByteChannel content, String suffix)
+    throws IOException {
+    return delegate.storeFileUsingContent(content, suffix);
+  }
+
+  @Override
+  public boolean delete(Path filePath) throws IOException {
+    return delegate.delete(filePath);
+  }
+
+  @Override
+  public String read(Path filePath, Charset charset) throws IOException {
+    return delegate.read(filePath, charset);
+  }
+
+  @Override
+  public ByteBuffer read(Path filePath) throws IOException {
+    return delegate.read(filePath);
+  }
+
+  @Override
+  public int read(Path filePath, long offset, ByteBuffer dst) throws IOException {
+    return delegate.read(filePath, offset, dst);
+  }
+
+  @Override
+  public long read(Path filePath, long offset, ByteBuffer[] dsts) throws IOException {
+    return delegate.read(filePath, offset, dsts);
+  }
+
+  @Override
+  public ReadableByteChannel openReadChannel(Path filePath) throws IOException {
+    return delegate.openReadChannel(filePath);
+  }
+
+  @Override
+  public boolean verify(Path filePath) throws IOException {
+    return delegate.verify(filePath);
+  }
+
+  @Override
+  public long size(Path filePath) throws IOException {
+    return delegate.size(filePath);
+  }
+}
@@ -0,0 +1,318 @@
+package org.easyweb4j.storage.file;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.easyweb4j.concurrent.semaphore.RateSemaphore;
+
+/**
+ * 按类别调度文件I/O，限制总并发和每类的并发及带宽
+ * <p>
+ * 总并发对应磁盘能同时处理的请求数，空出时按类别优先级依次放行等待的操作，同类按到达顺序；
+ * 某类达到自身并发上限时跳过，不阻塞其他类别。等待的类别连续被更高优先级越过{@value #MAX_BYPASSES}次后
+ * 优先放行一次，持续的前台负载下后台任务仍能推进。带宽按每64KB一个许可预约，在占用并发之外等待，
+ * 限速中的操作不占用磁盘的并发
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class IoScheduler {
+
+  /**
+   * 每个带宽许可对应的字节数
+   */
+  private static final int BYTES_PER_PERMIT = 64 * 1024;
+
+  /**
+   * 等待的类别最多被更高优先级连续越过的次数
+   */
+  static final int MAX_BYPASSES = 16;
+
+  /**
+   * I/O类别，按优先级从高到低
+   */
+  public enum IoClass {
+    /**
+     * 前台读取，对延迟敏感
+     */
+    INTERACTIVE,
+    /**
+     * 前台写入和删除
+     */
+    WRITE,
+    /**
+     * 批量导入、校验等后台任务
+     */
+    BACKGROUND
+  }
+
+  private final int maxInFlight;
+  private final int[] maxConcurrent = new int[IoClass.values().length];
+  private final RateSemaphore[] bandwidths = new RateSemaphore[IoClass.values().length];
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final int[] inFlight = new int[IoClass.values().length];
+  private int totalInFlight;
+  private final int[] bypassed = new int[IoClass.values().length];
+  private final List<ArrayDeque<Waiter>> waiters = new ArrayList<>();
+
+  /**
+   * @param maxInFlight 总并发，如磁盘的队列深度，每类的并发上限默认与此相同
+   */
+  public IoScheduler(int maxInFlight) {
+    if (1 > maxInFlight) {
+      throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+    }
+
+    this.maxInFlight = maxInFlight;
+    for (IoClass ioClass : IoClass.values()) {
+      maxConcurrent[ioClass.ordinal()] = maxInFlight;
+      waiters.add(new ArrayDeque<>());
+    }
+  }
+
+  /**
+   * 设置类别的限制，可在运行中调整
+   *
+   * @param ioClass       类别
+   * @param maxConcurrent 并发上限
+   * @param bandwidth     带宽，每个许可为64KB，需支持{@link RateSemaphore#reserve}，null不限速
+   * @return this
+   */
+  public IoScheduler limit(IoClass ioClass, int maxConcurrent, RateSemaphore bandwidth) {
+    if (1 > maxConcurrent) {
+      throw new IllegalArgumentException("maxConcurrent must be positive: " + maxConcurrent);
+    }
+
+    lock.lock();
+    try {
+      this.maxConcurrent[ioClass.ordinal()] = maxConcurrent;
+      this.bandwidths[ioClass.ordinal()] = bandwidth;
+      dispatch();
+    } finally {
+      lock.unlock();
+    }
+    return this;
+  }
+
+  /**
+   * 等待放行，之后需调用{@link #release}
+   *
+   * @param ioClass 类别
+   * @throws InterruptedIOException 等待时被中断
+   */
+  public void acquire(IoClass ioClass) throws InterruptedIOException {
+    acquire(ioClass, true);
+  }
+
+  private void acquire(IoClass ioClass, boolean interruptible) throws InterruptedIOException {
+    int index = ioClass.ordinal();
+    lock.lock();
+    try {
+      if (waiters.get(index).isEmpty() && admittable(index)) {
+        admit(index);
+        return;
+      }
+
+      Waiter waiter = new Waiter(lock.newCondition());
+      waiters.get(index).add(waiter);
+      try {
+        while (!waiter.admitted) {
+          if (interruptible) {
+            waiter.condition.await();
+          } else {
+            waiter.condition.awaitUninterruptibly();
+          }
+        }
+      } catch (InterruptedException e) {
+        if (waiter.admitted) {
+          // 放行与中断同时发生，归还让给其他等待者
+          releaseLocked(index);
+        } else {
+          waiters.get(index).remove(waiter);
+        }
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while waiting for " + ioClass);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void release(IoClass ioClass) {
+    lock.lock();
+    try {
+      releaseLocked(ioClass.ordinal());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * 按类别的带宽等待，未设置带宽时立即返回
+   *
+   * @param ioClass 类别
+   * @param bytes   读写的字节数
+   * @throws InterruptedIOException 等待时被中断
+   */
+  public void throttle(IoClass ioClass, long bytes) throws InterruptedIOException {
+    long waitNanos = reserve(ioClass, bytes);
+    if (0 < waitNanos) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while throttling " + ioClass);
+      }
+    }
+  }
+
+  /**
+   * 已占用并发时按带宽等待，如流式写入每读取一块源数据；需要等待时先归还并发，
+   * 等待后重新排队，限速期间不阻塞其他操作
+   * <p>
+   * 返回或抛出异常时都已重新占用并发，调用方照常{@link #release}
+   *
+   * @param ioClass 类别
+   * @param bytes   读写的字节数
+   * @throws InterruptedIOException 等待时被中断
+   */
+  public void throttleInFlight(IoClass ioClass, long bytes) throws InterruptedIOException {
+    long waitNanos = reserve(ioClass, bytes);
+    if (0 >= waitNanos) {
+      return;
+    }
+
+    release(ioClass);
+    boolean interrupted = false;
+    try {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    } catch (InterruptedException e) {
+      interrupted = true;
+    }
+    acquire(ioClass, false);
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while throttling " + ioClass);
+    }
+  }
+
+  /**
+   * 预约带宽
+   *
+   * @return 需要等待的纳秒数，未设置带宽时为0
+   */
+  private long reserve(IoClass ioClass, long bytes) {
+    if (0 >= bytes) {
+      return 0;
+    }
+
+    RateSemaphore bandwidth;
+    lock.lock();
+    try {
+      bandwidth = bandwidths[ioClass.ordinal()];
+    } finally {
+      lock.unlock();
+    }
+    if (null == bandwidth) {
+      return 0;
+    }
+
+    long permits = (bytes + BYTES_PER_PERMIT - 1) / BYTES_PER_PERMIT;
+    return bandwidth.reserve((int) Math.min(Integer.MAX_VALUE, permits));
+  }
+
+  /**
+   * 正在执行的数量
+   */
+  public int inFlight(IoClass ioClass) {
+    lock.lock();
+    try {
+      return inFlight[ioClass.ordinal()];
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * 等待放行的数量
+   */
+  public int queued(IoClass ioClass) {
+    lock.lock();
+    try {
+      return waiters.get(ioClass.ordinal()).size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean admittable(int index) {
+    return totalInFlight < maxInFlight && inFlight[index] < maxConcurrent[index];
+  }
+
+  private void admit(int index) {
+    inFlight[index]++;
+    totalInFlight++;
+  }
+
+  private void releaseLocked(int index) {
+    inFlight[index]--;
+    totalInFlight--;
+    dispatch();
+  }
+
+  /**
+   * 按优先级放行等待者，达到上限的类别跳过，被越过过多次的类别优先
+   */
+  private void dispatch() {
+    while (totalInFlight < maxInFlight) {
+      int index = next();
+      if (0 > index) {
+        return;
+      }
+
+      for (int lower = index + 1; lower < waiters.size(); lower++) {
+        bypassed[lower] = waiters.get(lower).isEmpty() ? 0 : bypassed[lower] + 1;
+      }
+      bypassed[index] = 0;
+      Waiter waiter = waiters.get(index).poll();
+      waiter.admitted = true;
+      admit(index);
+      waiter.condition.signal();
+    }
+  }
+
+  /**
+   * @return 下一个放行的类别，没有可放行的等待者时为-1
+   */
+  private int next() {
+    int next = -1;
+    for (int index = 0; index < waiters.size(); index++) {
+      if (waiters.get(index).isEmpty() || !admittable(index)) {
+        continue;
+      }
+      if (MAX_BYPASSES <= bypassed[index]) {
+        return index;
+      }
+      if (0 > next) {
+        next = index;
+      }
+    }
+    return next;
+  }
+
+  private static final class Waiter {
+
+    private final Condition condition;
+    private boolean admitted;
+
+    private Waiter(Condition condition) {
+      this.condition = condition;
+    }
+  }
+}
@@ -0,0 +1,233 @@
+package org.easyweb4j.storage.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import org.easyweb4j.storage.file.IoScheduler.IoClass;
+
+/**
+ * 经{@link IoScheduler}调度的文件服务，后台的批量写入不会拖慢前台读取
+ * <p>
+ * 默认读取为{@link IoClass#INTERACTIVE}，写入和删除为{@link IoClass#WRITE}，校验为
+ * {@link IoClass#BACKGROUND}；{@link #as}返回所有操作都使用指定类别的视图，与原服务共享调度。
+ * 流式写入按读取的源数据限速，读取整个文件和校验先按文件大小限速，限速等待时都归还并发；
+ * 打开的读取通道按读取的数据限速，只在打开时占用并发
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class IoSchedulingFileService extends ForwardingFileService {
+
+  private final IoScheduler scheduler;
+
+  /**
+   * null时按操作选择类别
+   */
+  private final IoClass ioClass;
+
+  public IoSchedulingFileService(FileService delegate, IoScheduler scheduler) {
+    this(delegate, scheduler, null);
+  }
+
+  private IoSchedulingFileService(FileService delegate, IoScheduler scheduler, IoClass ioClass) {
+    super(delegate);
+    if (null == scheduler) {
+      throw new IllegalArgumentException("scheduler must not be null");
+    }
+    this.scheduler = scheduler;
+    this.ioClass = ioClass;
+  }
+
+  /**
+   * 所有操作都使用指定类别的视图，如批量导入使用{@link IoClass#BACKGROUND}
+   *
+   * @param ioClass 类别
+   * @return 共享调度的文件服务
+   */
+  public IoSchedulingFileService as(IoClass ioClass) {
+    return new IoSchedulingFileService(delegate(), scheduler, ioClass);
+  }
+
+  @Override
+  public Path storeFileUsingDate(ByteBuffer content, String fileName, String suffix)
+    throws IOException {
+    return schedule(IoClass.WRITE, content.remaining(),
+      () -> super.storeFileUsingDate(content, fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingHash(ByteBuffer content, String fileName, String suffix)
+    throws IOException {
+    return schedule(IoClass.WRITE, content.remaining(),
+      () -> super.storeFileUsingHash(content, fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingDate(ReadableByteChannel content, String fileName, String suffix)
+    throws IOException {
+    IoClass actualClass = classOf(IoClass.WRITE);
+    return schedule(actualClass, 0,
+      () -> super.storeFileUsingDate(throttled(actualClass, content, true), fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingHash(ReadableByteChannel content, String fileName, String suffix)
+    throws IOException {
+    IoClass actualClass = classOf(IoClass.WRITE);
+    return schedule(actualClass, 0,
+      () -> super.storeFileUsingHash(throttled(actualClass, content, true), fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingDate(ByteBuffer[] contents, String fileName, String suffix)
+    throws IOException {
+    return schedule(IoClass.WRITE, remaining(contents),
+      () -> super.storeFileUsingDate(contents, fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingHash(ByteBuffer[] contents, String fileName, String suffix)
+    throws IOException {
+    return schedule(IoClass.WRITE, remaining(contents),
+      () -> super.storeFileUsingHash(contents, fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingContent(ByteBuffer content, String suffix) throws IOException {
+    return schedule(IoClass.WRITE, content.remaining(),
+      () -> super.storeFileUsingContent(content, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingContent(ReadableByteChannel content, String suffix)
+    throws IOException {
+    IoClass actualClass = classOf(IoClass.WRITE);
+    return schedule(actualClass, 0,
+      () -> super.storeFileUsingContent(throttled(actualClass, content, true), suffix));
+  }
+
+  @Override
+  public boolean delete(Path filePath) throws IOException {
+    return schedule(IoClass.WRITE, 0, () -> super.delete(filePath));
+  }
+
+  @Override
+  public String read(Path filePath, Charset charset) throws IOException {
+    ByteBuffer content = read(filePath);
+    Charset actualCharset = null == charset ? Charset.forName("UTF-8") : charset;
+    return actualCharset.decode(content).toString();
+  }
+
+  /**
+   * 占用并发后先按文件大小限速再读取，限速期间归还并发
+   */
+  @Override
+  public ByteBuffer read(Path filePath) throws IOException {
+    IoClass actualClass = classOf(IoClass.INTERACTIVE);
+    return schedule(actualClass, 0, () -> {
+      scheduler.throttleInFlight(actualClass, super.size(filePath));
+      return super.read(filePath);
+    });
+  }
+
+  @Override
+  public int read(Path filePath, long offset, ByteBuffer dst) throws IOException {
+    return schedule(IoClass.INTERACTIVE, dst.remaining(),
+      () -> super.read(filePath, offset, dst));
+  }
+
+  @Override
+  public long read(Path filePath, long offset, ByteBuffer[] dsts) throws IOException {
+    return schedule(IoClass.INTERACTIVE, remaining(dsts),
+      () -> super.read(filePath, offset, dsts));
+  }
+
+  @Override
+  public ReadableByteChannel openReadChannel(Path filePath) throws IOException {
+    IoClass actualClass = classOf(IoClass.INTERACTIVE);
+    return throttled(actualClass, schedule(actualClass, 0, () -> super.openReadChannel(filePath)),
+      false);
+  }
+
+  /**
+   * 校验读取整个文件，与{@link #read(Path)}一样先按文件大小限速
+   */
+  @Override
+  public boolean verify(Path filePath) throws IOException {
+    IoClass actualClass = classOf(IoClass.BACKGROUND);
+    return schedule(actualClass, 0, () -> {
+      scheduler.throttleInFlight(actualClass, super.size(filePath));
+      return super.verify(filePath);
+    });
+  }
+
+  @Override
+  public long size(Path filePath) throws IOException {
+    return schedule(IoClass.INTERACTIVE, 0, () -> super.size(filePath));
+  }
+
+  private IoClass classOf(IoClass defaultClass) {
+    return null == ioClass ? defaultClass : ioClass;
+  }
+
+  /**
+   * 先按带宽等待，再占用并发执行
+   */
+  private <T> T schedule(IoClass defaultClass, long bytes, ScheduledOperation<T> operation)
+    throws IOException {
+    IoClass actualClass = classOf(defaultClass);
+    scheduler.throttle(actualClass, bytes);
+    scheduler.acquire(actualClass);
+    try {
+      return operation.execute();
+    } finally {
+      scheduler.release(actualClass);
+    }
+  }
+
+  /**
+   * @param inFlight 是否在占用并发期间读取，是时限速等待前归还并发
+   */
+  private ReadableByteChannel throttled(IoClass actualClass, ReadableByteChannel channel,
+    boolean inFlight) {
+    return new ReadableByteChannel() {
+      @Override
+      public int read(ByteBuffer dst) throws IOException {
+        int read = channel.read(dst);
+        if (inFlight) {
+          scheduler.throttleInFlight(actualClass, read);
+        } else {
+          scheduler.throttle(actualClass, read);
+        }
+        return read;
+      }
+
+      @Override
+      public boolean isOpen() {
+        return channel.isOpen();
+      }
+
+      @Override
+      public void close() throws IOException {
+        channel.close();
+      }
+    };
+  }
+
+  private static long remaining(ByteBuffer[] buffers) {
+    long remaining = 0;
+    for (ByteBuffer buffer : buffers) {
+      remaining += buffer.remaining();
+    }
+    return remaining;
+  }
+
+  @FunctionalInterface
+  private interface ScheduledOperation<T> {
+
+    T execute() throws IOException;
+  }
+}
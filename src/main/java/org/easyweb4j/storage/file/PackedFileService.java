@@ -0,0 +1,701 @@
+package org.easyweb4j.storage.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 小文件打包存储，小于上限的内容追加写入大的段文件，避免每个小文件占用一个inode
+ * <p>
+ * 返回的逻辑路径为**pack/段号/序号.{suffix}**，可直接用于读取和删除；
+ * 大文件和按内容寻址的存储交给被装饰的服务。
+ * 段内每条记录为16字节头(magic, 标记, 长度, crc32)加内容，启动时扫描记录头重建内存索引，
+ * 进程崩溃留下的残缺尾部会被截断，段中间的记录头损坏时启动失败，不丢弃其后的记录。
+ * 追加和删除后按{@link DurabilityPolicy}刷新段文件。删除只修改记录头的标记，{@link #compact(double)}
+ * 重写垃圾比例高的段，已删除的记录只保留记录头，序号不变，逻辑路径不会失效
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class PackedFileService extends ForwardingFileService implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PackedFileService.class);
+
+  /**
+   * 逻辑路径的第一级目录
+   */
+  public static final String PACK_DIR = "pack";
+
+  private static final String SEGMENT_SUFFIX = ".seg";
+  private static final int RECORD_MAGIC = 0x50414b31;
+  private static final int HEADER_SIZE = 16;
+  private static final int FLAGS_OFFSET = 4;
+  private static final int FLAG_DELETED = 1;
+
+  private final Path segmentDir;
+  private final int maximumBlobBytes;
+  private final long maximumSegmentBytes;
+  private final DurabilityPolicy durabilityPolicy;
+  private final ConcurrentHashMap<Integer, Segment> segments = new ConcurrentHashMap<>();
+  private final Object appendLock = new Object();
+  private volatile Segment activeSegment;
+
+  /**
+   * @param delegate            被装饰的文件服务
+   * @param segmentDir          段文件目录
+   * @param maximumBlobBytes    打包的内容上限，超过的交给被装饰的服务
+   * @param maximumSegmentBytes 段文件大小上限
+   * @param durabilityPolicy    追加和删除后的持久化策略
+   * @throws IOException 段文件损坏
+   */
+  public PackedFileService(FileService delegate, Path segmentDir, int maximumBlobBytes,
+    long maximumSegmentBytes, DurabilityPolicy durabilityPolicy) throws IOException {
+    super(delegate);
+    if (null == durabilityPolicy) {
+      throw new IllegalArgumentException("durabilityPolicy must not be null");
+    }
+    if (1 > maximumBlobBytes || maximumSegmentBytes < HEADER_SIZE + maximumBlobBytes) {
+      throw new IllegalArgumentException(
+        "invalid maximumBlobBytes or maximumSegmentBytes: " + maximumBlobBytes + ", "
+          + maximumSegmentBytes);
+    }
+
+    this.segmentDir = segmentDir;
+    this.maximumBlobBytes = maximumBlobBytes;
+    this.maximumSegmentBytes = maximumSegmentBytes;
+    this.durabilityPolicy = durabilityPolicy;
+
+    Files.createDirectories(segmentDir);
+    int lastId = 0;
+    try (DirectoryStream<Path> stream = Files
+      .newDirectoryStream(segmentDir, "*" + SEGMENT_SUFFIX)) {
+      for (Path file : stream) {
+        String name = file.getFileName().toString();
+        String idName = name.substring(0, name.length() - SEGMENT_SUFFIX.length());
+        if (!StringUtils.isNumeric(idName)) {
+          LOGGER.warn("skip unknown file in segment directory: {}", file);
+          continue;
+        }
+        int id = Integer.parseInt(idName);
+        segments.put(id, Segment.open(id, file));
+        lastId = Math.max(lastId, id);
+      }
+    } catch (IOException | RuntimeException e) {
+      close();
+      throw e;
+    }
+
+    activeSegment = 0 == lastId ? createSegment(1) : segments.get(lastId);
+  }
+
+  /**
+   * 不刷盘，崩溃时可能丢失最近追加的记录
+   *
+   * @param delegate            被装饰的文件服务
+   * @param segmentDir          段文件目录
+   * @param maximumBlobBytes    打包的内容上限，超过的交给被装饰的服务
+   * @param maximumSegmentBytes 段文件大小上限
+   * @throws IOException 段文件损坏
+   */
+  public PackedFileService(FileService delegate, Path segmentDir, int maximumBlobBytes,
+    long maximumSegmentBytes) throws IOException {
+    this(delegate, segmentDir, maximumBlobBytes, maximumSegmentBytes, DurabilityPolicy.none());
+  }
+
+  /**
+   * 8KB以下打包，段文件上限256MB
+   *
+   * @param delegate   被装饰的文件服务
+   * @param segmentDir 段文件目录
+   * @throws IOException
+   */
+  public PackedFileService(FileService delegate, Path segmentDir) throws IOException {
+    this(delegate, segmentDir, 8 * 1024, 256L * 1024 * 1024);
+  }
+
+  /**
+   * 小文件打包，文件名不保留
+   */
+  @Override
+  public Path storeFileUsingDate(ByteBuffer content, String fileName, String suffix)
+    throws IOException {
+    if (content.remaining() > maximumBlobBytes) {
+      return super.storeFileUsingDate(content, fileName, suffix);
+    }
+    return append(content, suffix);
+  }
+
+  /**
+   * 小文件打包，文件名不保留
+   */
+  @Override
+  public Path storeFileUsingHash(ByteBuffer content, String fileName, String suffix)
+    throws IOException {
+    if (content.remaining() > maximumBlobBytes) {
+      return super.storeFileUsingHash(content, fileName, suffix);
+    }
+    return append(content, suffix);
+  }
+
+  /**
+   * 小文件合并后打包，文件名不保留
+   */
+  @Override
+  public Path storeFileUsingDate(ByteBuffer[] contents, String fileName, String suffix)
+    throws IOException {
+    if (remaining(contents) > maximumBlobBytes) {
+      return super.storeFileUsingDate(contents, fileName, suffix);
+    }
+    return append(gather(contents), suffix);
+  }
+
+  /**
+   * 小文件合并后打包，文件名不保留
+   */
+  @Override
+  public Path storeFileUsingHash(ByteBuffer[] contents, String fileName, String suffix)
+    throws IOException {
+    if (remaining(contents) > maximumBlobBytes) {
+      return super.storeFileUsingHash(contents, fileName, suffix);
+    }
+    return append(gather(contents), suffix);
+  }
+
+  @Override
+  public boolean delete(Path filePath) throws IOException {
+    BlobRef blobRef = BlobRef.parse(filePath);
+    if (null == blobRef) {
+      return super.delete(filePath);
+    }
+
+    Segment segment = segments.get(blobRef.segmentId);
+    if (null == segment || !segment.delete(blobRef.ordinal)) {
+      return false;
+    }
+    durabilityPolicy.sync(segment.file);
+    return true;
+  }
+
+  @Override
+  public String read(Path filePath, Charset charset) throws IOException {
+    if (null == BlobRef.parse(filePath)) {
+      return super.read(filePath, charset);
+    }
+
+    Charset actualCharset = null == charset ? Charset.forName("UTF-8") : charset;
+    return actualCharset.decode(read(filePath)).toString();
+  }
+
+  @Override
+  public ByteBuffer read(Path filePath) throws IOException {
+    BlobRef blobRef = BlobRef.parse(filePath);
+    if (null == blobRef) {
+      return super.read(filePath);
+    }
+
+    return segment(blobRef, filePath).read(blobRef.ordinal, filePath);
+  }
+
+  @Override
+  public int read(Path filePath, long offset, ByteBuffer dst) throws IOException {
+    if (null == BlobRef.parse(filePath)) {
+      return super.read(filePath, offset, dst);
+    }
+
+    ByteBuffer content = read(filePath);
+    if (offset >= content.limit()) {
+      return dst.hasRemaining() ? -1 : 0;
+    }
+
+    content.position((int) offset);
+    content.limit(Math.min(content.limit(), content.position() + dst.remaining()));
+    int read = content.remaining();
+    dst.put(content);
+    return read;
+  }
+
+  @Override
+  public long read(Path filePath, long offset, ByteBuffer[] dsts) throws IOException {
+    if (null == BlobRef.parse(filePath)) {
+      return super.read(filePath, offset, dsts);
+    }
+
+    ByteBuffer content = read(filePath);
+    if (offset >= content.limit()) {
+      return 0 < remaining(dsts) ? -1 : 0;
+    }
+
+    content.position((int) offset);
+    long read = 0;
+    for (ByteBuffer dst : dsts) {
+      int length = Math.min(content.remaining(), dst.remaining());
+      ByteBuffer slice = content.duplicate();
+      slice.limit(slice.position() + length);
+      dst.put(slice);
+      content.position(content.position() + length);
+      read += length;
+    }
+    return read;
+  }
+
+  @Override
+  public ReadableByteChannel openReadChannel(Path filePath) throws IOException {
+    if (null == BlobRef.parse(filePath)) {
+      return super.openReadChannel(filePath);
+    }
+
+    ByteBuffer content = read(filePath);
+    byte[] bytes = new byte[content.remaining()];
+    content.get(bytes);
+    return Channels.newChannel(new ByteArrayInputStream(bytes));
+  }
+
+  @Override
+  public long size(Path filePath) throws IOException {
+    BlobRef blobRef = BlobRef.parse(filePath);
+    if (null == blobRef) {
+      return super.size(filePath);
+    }
+
+    return segment(blobRef, filePath).size(blobRef.ordinal, filePath);
+  }
+
+  /**
+   * 打包的文件按记录中的crc32校验
+   */
+  @Override
+  public boolean verify(Path filePath) throws IOException {
+    BlobRef blobRef = BlobRef.parse(filePath);
+    if (null == blobRef) {
+      return super.verify(filePath);
+    }
+
+    return segment(blobRef, filePath).verify(blobRef.ordinal, filePath);
+  }
+
+  /**
+   * 重写已删除内容超过比例的段，正在写入的段不参与
+   *
+   * @param minimumGarbageRatio 已删除字节占段大小的最小比例
+   * @return 回收的字节数
+   * @throws IOException
+   */
+  public long compact(double minimumGarbageRatio) throws IOException {
+    long reclaimed = 0;
+    for (Segment segment : segments.values()) {
+      if (segment != activeSegment && segment.garbageRatio() >= minimumGarbageRatio) {
+        reclaimed += segment.compact();
+      }
+    }
+    return reclaimed;
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (Segment segment : segments.values()) {
+      segment.close();
+    }
+  }
+
+  private Path append(ByteBuffer content, String suffix) throws IOException {
+    Segment segment;
+    int ordinal;
+    synchronized (appendLock) {
+      segment = activeSegment;
+      if (segment.size() + HEADER_SIZE + content.remaining() > maximumSegmentBytes) {
+        segment = createSegment(segment.id + 1);
+        activeSegment = segment;
+      }
+      ordinal = segment.append(content);
+    }
+    // 锁外刷盘，组提交时并发的追加合并刷新
+    durabilityPolicy.sync(segment.file);
+
+    String fileName = Integer.toString(ordinal);
+    if (StringUtils.isNotBlank(suffix)) {
+      fileName += "." + StringUtils.removeStart(suffix, ".").toLowerCase();
+    }
+    return Paths.get(PACK_DIR, Integer.toString(segment.id), fileName);
+  }
+
+  private static long remaining(ByteBuffer[] buffers) {
+    long remaining = 0;
+    for (ByteBuffer buffer : buffers) {
+      remaining += buffer.remaining();
+    }
+    return remaining;
+  }
+
+  /**
+   * 合并为一条记录的内容，不改变原缓冲的位置
+   */
+  private static ByteBuffer gather(ByteBuffer[] contents) {
+    ByteBuffer content = ByteBuffer.allocate((int) remaining(contents));
+    for (ByteBuffer part : contents) {
+      content.put(part.duplicate());
+    }
+    content.flip();
+    return content;
+  }
+
+  private Segment createSegment(int id) throws IOException {
+    Segment segment = Segment.open(id, segmentDir.resolve(id + SEGMENT_SUFFIX));
+    segments.put(id, segment);
+    LOGGER.debug("create segment: {}", id);
+    return segment;
+  }
+
+  private Segment segment(BlobRef blobRef, Path filePath) throws IOException {
+    Segment segment = segments.get(blobRef.segmentId);
+    if (null == segment) {
+      throw new NoSuchFileException(filePath.toString());
+    }
+    return segment;
+  }
+
+  private static final class BlobRef {
+
+    private final int segmentId;
+    private final int ordinal;
+
+    private BlobRef(int segmentId, int ordinal) {
+      this.segmentId = segmentId;
+      this.ordinal = ordinal;
+    }
+
+    /**
+     * @return 非逻辑路径返回null
+     */
+    private static BlobRef parse(Path filePath) {
+      if (3 != filePath.getNameCount() || !PACK_DIR.equals(filePath.getName(0).toString())) {
+        return null;
+      }
+
+      String segmentName = filePath.getName(1).toString();
+      String ordinalName = StringUtils.substringBefore(filePath.getName(2).toString(), ".");
+      if (!StringUtils.isNumeric(segmentName) || !StringUtils.isNumeric(ordinalName)) {
+        return null;
+      }
+      return new BlobRef(Integer.parseInt(segmentName), Integer.parseInt(ordinalName));
+    }
+  }
+
+  /**
+   * 段文件及其内存索引，追加和压缩持有写锁，读取持有读锁
+   */
+  private static final class Segment {
+
+    private final int id;
+    private final Path file;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private FileChannel channel;
+    private long size;
+    private int count;
+    private long[] offsets = new long[64];
+    private int[] lengths = new int[64];
+    private int[] checksums = new int[64];
+    private boolean[] deleted = new boolean[64];
+    private long garbageBytes;
+
+    private Segment(int id, Path file) {
+      this.id = id;
+      this.file = file;
+    }
+
+    private static Segment open(int id, Path file) throws IOException {
+      Segment segment = new Segment(id, file);
+      segment.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+      segment.load();
+      return segment;
+    }
+
+    /**
+     * 扫描记录头重建索引，截断残缺的尾部：不完整的记录头、全零的区域或内容超出文件末尾的记录。
+     * 其余位置的记录头损坏时失败，其后的记录仍在文件中
+     */
+    private void load() throws IOException {
+      long fileSize = channel.size();
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      long position = 0;
+      while (position + HEADER_SIZE <= fileSize) {
+        header.clear();
+        readFully(header, position);
+        header.flip();
+        int magic = header.getInt();
+        int flags = header.getInt();
+        int length = header.getInt();
+        int checksum = header.getInt();
+        if (RECORD_MAGIC != magic || 0 > length) {
+          // 崩溃时文件已变长但记录头未写入，读到的是零
+          if (isZeroTail(position, fileSize)) {
+            break;
+          }
+          channel.close();
+          throw new IOException("corrupt record header in segment: " + file + ", position "
+            + position);
+        }
+        if (position + HEADER_SIZE + length > fileSize) {
+          break;
+        }
+
+        add(position, length, checksum, 0 != (flags & FLAG_DELETED));
+        position += HEADER_SIZE + length;
+      }
+
+      if (position < fileSize) {
+        LOGGER.warn("truncate broken segment tail: {}, {} -> {}", file, fileSize, position);
+        channel.truncate(position);
+      }
+      size = position;
+    }
+
+    private boolean isZeroTail(long position, long fileSize) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(
+        (int) Math.min(64 * 1024, fileSize - position));
+      for (long current = position; current < fileSize; current += buffer.limit()) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), fileSize - current));
+        readFully(buffer, current);
+        for (int i = 0; i < buffer.limit(); i++) {
+          if (0 != buffer.get(i)) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    private long size() {
+      lock.readLock().lock();
+      try {
+        return size;
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    private double garbageRatio() {
+      lock.readLock().lock();
+      try {
+        return 0 == size ? 0 : (double) garbageBytes / size;
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    private int append(ByteBuffer content) throws IOException {
+      ByteBuffer data = content.duplicate();
+      CRC32 crc32 = new CRC32();
+      crc32.update(content.duplicate());
+      int length = data.remaining();
+      int checksum = (int) crc32.getValue();
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(RECORD_MAGIC).putInt(0).putInt(length).putInt(checksum).flip();
+
+      lock.writeLock().lock();
+      try {
+        long position = size;
+        writeFully(header, position);
+        writeFully(data, position + HEADER_SIZE);
+        size = position + HEADER_SIZE + length;
+        return add(position, length, checksum, false);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    private ByteBuffer read(int ordinal, Path filePath) throws IOException {
+      ByteBuffer content = readUnchecked(ordinal, filePath);
+      if (!isIntact(ordinal, content)) {
+        throw new IOException("checksum mismatch: " + filePath);
+      }
+      return content;
+    }
+
+    private boolean verify(int ordinal, Path filePath) throws IOException {
+      return isIntact(ordinal, readUnchecked(ordinal, filePath));
+    }
+
+    private ByteBuffer readUnchecked(int ordinal, Path filePath) throws IOException {
+      lock.readLock().lock();
+      try {
+        checkLive(ordinal, filePath);
+        ByteBuffer content = ByteBuffer.allocate(lengths[ordinal]);
+        readFully(content, offsets[ordinal] + HEADER_SIZE);
+        content.flip();
+        return content;
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    /**
+     * 校验和在记录写入后不再变化，无需持有锁
+     */
+    private boolean isIntact(int ordinal, ByteBuffer content) {
+      CRC32 crc32 = new CRC32();
+      crc32.update(content.duplicate());
+      return checksums[ordinal] == (int) crc32.getValue();
+    }
+
+    private long size(int ordinal, Path filePath) throws IOException {
+      lock.readLock().lock();
+      try {
+        checkLive(ordinal, filePath);
+        return lengths[ordinal];
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    private boolean delete(int ordinal) throws IOException {
+      lock.writeLock().lock();
+      try {
+        if (ordinal >= count || deleted[ordinal]) {
+          return false;
+        }
+
+        ByteBuffer flags = ByteBuffer.allocate(4).putInt(FLAG_DELETED);
+        flags.flip();
+        writeFully(flags, offsets[ordinal] + FLAGS_OFFSET);
+        deleted[ordinal] = true;
+        garbageBytes += lengths[ordinal];
+        return true;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    /**
+     * 写入新文件后替换，已删除的记录只保留长度为0的记录头
+     *
+     * @return 回收的字节数
+     */
+    private long compact() throws IOException {
+      lock.writeLock().lock();
+      try {
+        Path compactFile = file.resolveSibling(file.getFileName() + ".compact");
+        long[] newOffsets = new long[offsets.length];
+        long position = 0;
+        try (FileChannel target = FileChannel.open(compactFile, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+          ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+          for (int i = 0; i < count; i++) {
+            newOffsets[i] = position;
+            if (deleted[i]) {
+              header.clear();
+              header.putInt(RECORD_MAGIC).putInt(FLAG_DELETED).putInt(0).putInt(0).flip();
+              while (header.hasRemaining()) {
+                position += target.write(header, position);
+              }
+              continue;
+            }
+
+            long recordSize = HEADER_SIZE + lengths[i];
+            long transferred = 0;
+            while (transferred < recordSize) {
+              transferred += channel.transferTo(offsets[i] + transferred,
+                recordSize - transferred, target.position(position + transferred));
+            }
+            position += recordSize;
+          }
+          target.force(true);
+        }
+
+        channel.close();
+        Files.move(compactFile, file, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long reclaimed = size - position;
+        for (int i = 0; i < count; i++) {
+          if (deleted[i]) {
+            lengths[i] = 0;
+          }
+        }
+        offsets = newOffsets;
+        size = position;
+        garbageBytes = 0;
+        LOGGER.debug("compact segment: {}, reclaimed={}", id, reclaimed);
+        return reclaimed;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    private void close() throws IOException {
+      lock.writeLock().lock();
+      try {
+        channel.close();
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    private int add(long offset, int length, int checksum, boolean isDeleted) {
+      if (count == offsets.length) {
+        int capacity = count * 2;
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        checksums = Arrays.copyOf(checksums, capacity);
+        deleted = Arrays.copyOf(deleted, capacity);
+      }
+
+      offsets[count] = offset;
+      lengths[count] = length;
+      checksums[count] = checksum;
+      deleted[count] = isDeleted;
+      if (isDeleted) {
+        garbageBytes += length;
+      }
+      return count++;
+    }
+
+    private void checkLive(int ordinal, Path filePath) throws IOException {
+      if (ordinal >= count || deleted[ordinal]) {
+        throw new NoSuchFileException(filePath.toString());
+      }
+    }
+
+    private void readFully(ByteBuffer dst, long position) throws IOException {
+      long current = position;
+      while (dst.hasRemaining()) {
+        int read = channel.read(dst, current);
+        if (-1 == read) {
+          throw new IOException("unexpected end of segment: " + file);
+        }
+        current += read;
+      }
+    }
+
+    private void writeFully(ByteBuffer src, long position) throws IOException {
+      long current = position;
+      while (src.hasRemaining()) {
+        current += channel.write(src, current);
+      }
+    }
+  }
+}
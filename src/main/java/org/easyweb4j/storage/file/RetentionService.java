@@ -0,0 +1,366 @@
+package org.easyweb4j.storage.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.easyweb4j.concurrent.DefaultExecutorThreadFactory;
+import org.easyweb4j.concurrent.semaphore.RateSemaphore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 按日期目录过期和分层的服务，只处理{@link FileService#storeFileUsingDate}写入的yyyy/MM/dd目录
+ * <p>
+ * 过期的日期目录先整体重命名到临时目录，立即从命名空间中消失，再逐个删除其中的文件，
+ * 删除失败或被中断留下的目录在下次执行时继续删除；
+ * 超过分层天数的目录移动到冷存储{@link AbstractFileService#coldPrefix()}，同一文件系统时整体重命名，
+ * 否则逐个复制后删除。删除和复制都受速率限制，在低优先级的后台线程执行，不影响前台写入。
+ * 早于保留天数的清单{@link AbstractFileService#listStored}一并删除
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class RetentionService implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RetentionService.class);
+
+  private static final AtomicLong TRASH_SEQUENCE = new AtomicLong();
+
+  /**
+   * 过期目录重命名后的名称前缀，位于临时目录中
+   */
+  private static final String TRASH_PREFIX = "expired-";
+
+  private final AbstractFileService fileService;
+  private final int retainDays;
+  private final int coldAfterDays;
+  private final RateSemaphore ioBudget;
+
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * @param fileService   文件服务
+   * @param retainDays    保留天数，早于今天减此天数的目录被删除，包括冷存储中的
+   * @param coldAfterDays 早于今天减此天数的目录移动到冷存储，0表示不分层，需小于保留天数
+   * @param ioBudget      I/O限速，每删除或复制一个文件占用一个许可，null不限速
+   */
+  public RetentionService(AbstractFileService fileService, int retainDays, int coldAfterDays,
+    RateSemaphore ioBudget) {
+    if (null == fileService || 1 > retainDays || 0 > coldAfterDays
+      || (0 < coldAfterDays && coldAfterDays >= retainDays)) {
+      throw new IllegalArgumentException(
+        "invalid retention: retainDays=" + retainDays + ", coldAfterDays=" + coldAfterDays);
+    }
+    if (0 < coldAfterDays && null == fileService.coldPrefix()) {
+      throw new IllegalArgumentException("coldAfterDays requires a cold prefix");
+    }
+
+    this.fileService = fileService;
+    this.retainDays = retainDays;
+    this.coldAfterDays = coldAfterDays;
+    this.ioBudget = ioBudget;
+  }
+
+  /**
+   * 按固定间隔在后台执行，异常只记录日志
+   *
+   * @param period 间隔
+   * @param unit   时间单位
+   */
+  public synchronized void start(long period, TimeUnit unit) {
+    if (null != scheduler) {
+      throw new IllegalStateException("retention already started");
+    }
+
+    scheduler = new ScheduledThreadPoolExecutor(1,
+      new DefaultExecutorThreadFactory("file-retention", Thread.MIN_PRIORITY));
+    scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        runOnce(LocalDate.now());
+      } catch (IOException | RuntimeException e) {
+        // 异常抛出会取消后续的执行
+        LOGGER.warn("retention failed: {}", fileService.prefix(), e);
+      }
+    }, 0, period, unit);
+  }
+
+  @Override
+  public synchronized void close() {
+    if (null != scheduler) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  /**
+   * 执行一次过期和分层
+   *
+   * @param today 当天日期
+   * @return 删除和移动的日期目录数
+   * @throws IOException 删除或移动失败
+   */
+  public int runOnce(LocalDate today) throws IOException {
+    LocalDate expireBefore = today.minusDays(retainDays);
+    LocalDate coldBefore = 0 < coldAfterDays ? today.minusDays(coldAfterDays) : null;
+    Path hotRoot = fileService.prefix();
+    Path coldRoot = fileService.coldPrefix();
+
+    // 上次删除失败或被中断留下的过期目录
+    deleteTrash(hotRoot);
+    if (null != coldRoot) {
+      deleteTrash(coldRoot);
+    }
+
+    int processed = 0;
+    for (Path dayDir : dayDirs(hotRoot)) {
+      LocalDate day = dayOf(hotRoot, dayDir);
+      if (day.isBefore(expireBefore)) {
+        expire(hotRoot, dayDir);
+      } else if (null != coldBefore && day.isBefore(coldBefore)) {
+        moveToCold(hotRoot, coldRoot, dayDir);
+      } else {
+        continue;
+      }
+      forgetAndPrune(hotRoot, dayDir);
+      processed++;
+    }
+
+    if (null != coldRoot) {
+      for (Path dayDir : dayDirs(coldRoot)) {
+        if (dayOf(coldRoot, dayDir).isBefore(expireBefore)) {
+          expire(coldRoot, dayDir);
+          prune(coldRoot, dayDir.getParent());
+          processed++;
+        }
+      }
+    }
+
+    expireManifests(hotRoot, expireBefore);
+    return processed;
+  }
+
+  /**
+   * 删除早于保留期的清单，每天一个清单，文件名为ISO日期
+   */
+  private void expireManifests(Path root, LocalDate expireBefore) throws IOException {
+    Path manifestDir = root.resolve(AbstractFileService.MANIFEST_DIR);
+    if (!Files.isDirectory(manifestDir)) {
+      return;
+    }
+
+    try (DirectoryStream<Path> manifests = Files.newDirectoryStream(manifestDir)) {
+      for (Path manifest : manifests) {
+        LocalDate day;
+        try {
+          day = LocalDate.parse(manifest.getFileName().toString());
+        } catch (DateTimeParseException e) {
+          continue;
+        }
+        if (day.isBefore(expireBefore)) {
+          acquire();
+          LOGGER.info("expire manifest: {}", manifest);
+          Files.deleteIfExists(manifest);
+        }
+      }
+    }
+  }
+
+  /**
+   * 重命名到临时目录后删除，同一文件系统内重命名是原子的
+   */
+  private void expire(Path root, Path dayDir) throws IOException {
+    Path trashDir = root.resolve(AbstractFileService.TMP_DIR);
+    Files.createDirectories(trashDir);
+    Path trash = trashDir.resolve(TRASH_PREFIX + dayOf(root, dayDir) + "-"
+      + TRASH_SEQUENCE.incrementAndGet());
+    try {
+      Files.move(dayDir, trash, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      trash = dayDir;
+    }
+    LOGGER.info("expire day directory: {}", dayDir);
+    deleteTree(trash);
+  }
+
+  private void deleteTrash(Path root) throws IOException {
+    Path trashDir = root.resolve(AbstractFileService.TMP_DIR);
+    if (!Files.isDirectory(trashDir)) {
+      return;
+    }
+
+    try (DirectoryStream<Path> trashes = Files.newDirectoryStream(trashDir, TRASH_PREFIX + "*")) {
+      for (Path trash : trashes) {
+        if (Files.isDirectory(trash)) {
+          LOGGER.info("delete leftover expired directory: {}", trash);
+          deleteTree(trash);
+        }
+      }
+    }
+  }
+
+  /**
+   * 同一文件系统时整体重命名，否则逐个复制后删除；复制期间读取仍命中原文件
+   */
+  private void moveToCold(Path hotRoot, Path coldRoot, Path dayDir) throws IOException {
+    Path coldDayDir = coldRoot.resolve(hotRoot.relativize(dayDir));
+    Files.createDirectories(coldDayDir.getParent());
+    LOGGER.info("move day directory to cold: {} -> {}", dayDir, coldDayDir);
+    // 上次移动中断留下了部分文件时，重命名到非空目录的错误不可区分，直接逐个复制
+    if (!Files.exists(coldDayDir)) {
+      try {
+        Files.move(dayDir, coldDayDir, StandardCopyOption.ATOMIC_MOVE);
+        return;
+      } catch (AtomicMoveNotSupportedException | FileAlreadyExistsException
+        | DirectoryNotEmptyException e) {
+        // 跨文件系统，或并发创建了目标目录
+      }
+    }
+
+    Files.createDirectories(coldDayDir);
+    List<Path> sidecars = new ArrayList<>();
+    List<Path> dataFiles = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dayDir)) {
+      for (Path file : files) {
+        (AbstractFileService.isSidecar(file) ? sidecars : dataFiles).add(file);
+      }
+    }
+
+    // 附属文件先复制，数据文件在冷存储中出现时编码标记已存在；原处的附属文件在数据文件之后删除
+    for (Path sidecar : sidecars) {
+      copyToCold(sidecar, coldDayDir);
+    }
+    for (Path dataFile : dataFiles) {
+      copyToCold(dataFile, coldDayDir);
+      Files.delete(dataFile);
+    }
+    for (Path sidecar : sidecars) {
+      Files.delete(sidecar);
+    }
+    Files.delete(dayDir);
+  }
+
+  private void copyToCold(Path file, Path coldDayDir) throws IOException {
+    acquire();
+    Files.copy(file, coldDayDir.resolve(file.getFileName()),
+      StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+  }
+
+  private void deleteTree(Path dir) throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+      for (Path file : files) {
+        if (Files.isDirectory(file)) {
+          deleteTree(file);
+          continue;
+        }
+        acquire();
+        Files.deleteIfExists(file);
+      }
+    } catch (NoSuchFileException e) {
+      return;
+    }
+    Files.deleteIfExists(dir);
+  }
+
+  private void acquire() throws IOException {
+    if (null == ioBudget) {
+      return;
+    }
+
+    try {
+      ioBudget.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("retention interrupted");
+    }
+  }
+
+  /**
+   * 移除目录缓存，删除空的月和年目录
+   */
+  private void forgetAndPrune(Path root, Path dayDir) {
+    fileService.forgetDirectory(dayDir);
+    prune(root, dayDir.getParent());
+  }
+
+  private void prune(Path root, Path dir) {
+    while (!root.equals(dir)) {
+      try {
+        Files.delete(dir);
+      } catch (IOException e) {
+        // 非空或已删除
+        return;
+      }
+      fileService.forgetDirectory(dir);
+      dir = dir.getParent();
+    }
+  }
+
+  /**
+   * 按日期顺序列出yyyy/MM/dd目录，只访问年月日三级目录，不访问文件
+   */
+  private static List<Path> dayDirs(Path root) throws IOException {
+    List<Path> dayDirs = new ArrayList<>();
+    for (Path year : subDirs(root, 4)) {
+      for (Path month : subDirs(year, 2)) {
+        for (Path day : subDirs(month, 2)) {
+          if (null != dayOf(root, day)) {
+            dayDirs.add(day);
+          }
+        }
+      }
+    }
+    return dayDirs;
+  }
+
+  private static List<Path> subDirs(Path dir, int nameLength) throws IOException {
+    if (!Files.isDirectory(dir)) {
+      return Collections.emptyList();
+    }
+
+    List<Path> dirs = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      for (Path subDir : stream) {
+        String name = subDir.getFileName().toString();
+        if (nameLength == name.length() && name.chars().allMatch(Character::isDigit)
+          && Files.isDirectory(subDir)) {
+          dirs.add(subDir);
+        }
+      }
+    }
+    Collections.sort(dirs);
+    return dirs;
+  }
+
+  /**
+   * @return 不是合法日期时返回null
+   */
+  private static LocalDate dayOf(Path root, Path dayDir) {
+    Path relativePath = root.relativize(dayDir);
+    try {
+      return LocalDate.of(Integer.parseInt(relativePath.getName(0).toString()),
+        Integer.parseInt(relativePath.getName(1).toString()),
+        Integer.parseInt(relativePath.getName(2).toString()));
+    } catch (DateTimeException e) {
+      return null;
+    }
+  }
+}
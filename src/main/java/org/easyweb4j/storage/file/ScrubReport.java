@@ -0,0 +1,104 @@
+package org.easyweb4j.storage.file;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 校验全部文件的结果
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public final class ScrubReport {
+
+  private final long checkedFiles;
+  private final long uncheckedFiles;
+  private final List<Path> corruptFiles;
+  private final Map<Path, IOException> failedFiles;
+
+  private ScrubReport(long checkedFiles, long uncheckedFiles, List<Path> corruptFiles,
+    Map<Path, IOException> failedFiles) {
+    this.checkedFiles = checkedFiles;
+    this.uncheckedFiles = uncheckedFiles;
+    this.corruptFiles = Collections.unmodifiableList(corruptFiles);
+    this.failedFiles = Collections.unmodifiableMap(failedFiles);
+  }
+
+  /**
+   * 有校验和并完成校验的文件数，含损坏的文件
+   */
+  public long checkedFiles() {
+    return checkedFiles;
+  }
+
+  /**
+   * 没有校验和，未校验的文件数
+   */
+  public long uncheckedFiles() {
+    return uncheckedFiles;
+  }
+
+  /**
+   * 损坏的文件，相对路径
+   */
+  public List<Path> corruptFiles() {
+    return corruptFiles;
+  }
+
+  /**
+   * 读取失败的文件，如校验期间被删除
+   */
+  public Map<Path, IOException> failedFiles() {
+    return failedFiles;
+  }
+
+  @Override
+  public String toString() {
+    return "ScrubReport{checkedFiles=" + checkedFiles + ", uncheckedFiles=" + uncheckedFiles
+      + ", corruptFiles=" + corruptFiles.size() + ", failedFiles=" + failedFiles.size() + "}";
+  }
+
+  /**
+   * 并发收集结果
+   */
+  static final class Builder {
+
+    private final LongAdder checkedFiles = new LongAdder();
+    private final LongAdder uncheckedFiles = new LongAdder();
+    private final ConcurrentLinkedQueue<Path> corruptFiles = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<Path, IOException> failedFiles = new ConcurrentHashMap<>();
+
+    /**
+     * @param intact null未记录校验和
+     */
+    void record(Path filePath, Boolean intact) {
+      if (null == intact) {
+        uncheckedFiles.increment();
+        return;
+      }
+
+      checkedFiles.increment();
+      if (!intact) {
+        corruptFiles.add(filePath);
+      }
+    }
+
+    void recordError(Path filePath, IOException e) {
+      failedFiles.put(filePath, e);
+    }
+
+    ScrubReport build() {
+      return new ScrubReport(checkedFiles.sum(), uncheckedFiles.sum(),
+        new ArrayList<>(corruptFiles), new LinkedHashMap<>(failedFiles));
+    }
+  }
+}
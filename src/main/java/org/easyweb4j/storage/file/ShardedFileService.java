@@ -0,0 +1,308 @@
+package org.easyweb4j.storage.file;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * 多磁盘分片的文件服务，每个卷是挂载在不同磁盘上的文件服务
+ * <p>
+ * 写入时按一致性哈希选择卷，卷的权重决定虚拟节点数量，增删卷只影响相邻的部分。返回的相对路径
+ * 以卷名作为第一级目录，读取时据此路由，路径与卷的增删无关。每个卷限制同时写入的数量，
+ * 主卷写满时依次尝试环上的后继卷；按内容寻址存储的文件总是写入主卷，保证去重
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class ShardedFileService implements FileService {
+
+  /**
+   * 每单位权重的虚拟节点数
+   */
+  private static final int VIRTUAL_NODES_PER_WEIGHT = 64;
+
+  private final Map<String, Volume> volumes = new LinkedHashMap<>();
+  private final TreeMap<Long, Volume> ring = new TreeMap<>();
+  private final AtomicLong sequence = new AtomicLong();
+
+  public ShardedFileService(List<Volume> volumes) {
+    if (null == volumes || volumes.isEmpty()) {
+      throw new IllegalArgumentException("volumes must not be empty");
+    }
+
+    for (Volume volume : volumes) {
+      if (null != this.volumes.put(volume.name, volume)) {
+        throw new IllegalArgumentException("duplicate volume: " + volume.name);
+      }
+
+      for (int i = 0; i < volume.weight * VIRTUAL_NODES_PER_WEIGHT; i++) {
+        ring.put(hash(volume.name + "#" + i), volume);
+      }
+    }
+  }
+
+  @Override
+  public Path storeFileUsingDate(ByteBuffer content, String fileName, String suffix)
+    throws IOException {
+    return store(nextRoutingKey(), true,
+      fileService -> fileService.storeFileUsingDate(content, fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingHash(ByteBuffer content, String fileName, String suffix)
+    throws IOException {
+    return store(nextRoutingKey(), true,
+      fileService -> fileService.storeFileUsingHash(content, fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingDate(ReadableByteChannel content, String fileName, String suffix)
+    throws IOException {
+    return store(nextRoutingKey(), true,
+      fileService -> fileService.storeFileUsingDate(content, fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingHash(ReadableByteChannel content, String fileName, String suffix)
+    throws IOException {
+    return store(nextRoutingKey(), true,
+      fileService -> fileService.storeFileUsingHash(content, fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingDate(ByteBuffer[] contents, String fileName, String suffix)
+    throws IOException {
+    return store(nextRoutingKey(), true,
+      fileService -> fileService.storeFileUsingDate(contents, fileName, suffix));
+  }
+
+  @Override
+  public Path storeFileUsingHash(ByteBuffer[] contents, String fileName, String suffix)
+    throws IOException {
+    return store(nextRoutingKey(), true,
+      fileService -> fileService.storeFileUsingHash(contents, fileName, suffix));
+  }
+
+  /**
+   * 按内容的sha256路由，相同内容总在同一个卷上
+   */
+  @Override
+  public Path storeFileUsingContent(ByteBuffer content, String suffix) throws IOException {
+    MessageDigest digest = DigestUtils.getSha256Digest();
+    digest.update(content.duplicate());
+    return store(hash(digest.digest()), false,
+      fileService -> fileService.storeFileUsingContent(content, suffix));
+  }
+
+  /**
+   * 流式内容写入前无法得知hash，按序号路由，不同卷之间不去重
+   */
+  @Override
+  public Path storeFileUsingContent(ReadableByteChannel content, String suffix)
+    throws IOException {
+    return store(nextRoutingKey(), false,
+      fileService -> fileService.storeFileUsingContent(content, suffix));
+  }
+
+  @Override
+  public boolean delete(Path filePath) throws IOException {
+    return volumeOf(filePath).fileService.delete(pathInVolume(filePath));
+  }
+
+  @Override
+  public String read(Path filePath, Charset charset) throws IOException {
+    return volumeOf(filePath).fileService.read(pathInVolume(filePath), charset);
+  }
+
+  @Override
+  public ByteBuffer read(Path filePath) throws IOException {
+    return volumeOf(filePath).fileService.read(pathInVolume(filePath));
+  }
+
+  @Override
+  public int read(Path filePath, long offset, ByteBuffer dst) throws IOException {
+    return volumeOf(filePath).fileService.read(pathInVolume(filePath), offset, dst);
+  }
+
+  @Override
+  public long read(Path filePath, long offset, ByteBuffer[] dsts) throws IOException {
+    return volumeOf(filePath).fileService.read(pathInVolume(filePath), offset, dsts);
+  }
+
+  @Override
+  public ReadableByteChannel openReadChannel(Path filePath) throws IOException {
+    return volumeOf(filePath).fileService.openReadChannel(pathInVolume(filePath));
+  }
+
+  @Override
+  public boolean verify(Path filePath) throws IOException {
+    return volumeOf(filePath).fileService.verify(pathInVolume(filePath));
+  }
+
+  @Override
+  public long size(Path filePath) throws IOException {
+    return volumeOf(filePath).fileService.size(pathInVolume(filePath));
+  }
+
+  /**
+   * 所有卷，只读
+   */
+  public List<Volume> volumes() {
+    return Collections.unmodifiableList(new ArrayList<>(volumes.values()));
+  }
+
+  /**
+   * 按环的顺序从主卷开始的不重复的卷
+   *
+   * @param key 路由哈希
+   * @return 卷
+   */
+  private List<Volume> route(long key) {
+    Set<Volume> ordered = new LinkedHashSet<>();
+    for (Volume volume : ring.tailMap(key).values()) {
+      if (ordered.add(volume) && ordered.size() == volumes.size()) {
+        return new ArrayList<>(ordered);
+      }
+    }
+    for (Volume volume : ring.headMap(key).values()) {
+      if (ordered.add(volume) && ordered.size() == volumes.size()) {
+        break;
+      }
+    }
+    return new ArrayList<>(ordered);
+  }
+
+  private Path store(long key, boolean spill, VolumeWriter writer) throws IOException {
+    List<Volume> candidates = route(key);
+    Volume primary = candidates.get(0);
+    if (spill) {
+      for (Volume volume : candidates) {
+        if (volume.writePermits.tryAcquire()) {
+          return write(volume, writer);
+        }
+      }
+    }
+
+    // 所有卷都已写满，或不允许换卷时，在主卷上等待
+    try {
+      primary.writePermits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while waiting for volume: " + primary.name);
+    }
+    return write(primary, writer);
+  }
+
+  /**
+   * 调用时已持有卷的写入许可
+   */
+  private Path write(Volume volume, VolumeWriter writer) throws IOException {
+    try {
+      return Paths.get(volume.name).resolve(writer.write(volume.fileService));
+    } finally {
+      volume.writePermits.release();
+    }
+  }
+
+  /**
+   * 返回路径中带有卷名，写入无需确定的路由，按序号的哈希在环上按权重分布
+   */
+  private long nextRoutingKey() {
+    return hash(Long.toString(sequence.incrementAndGet()));
+  }
+
+  private Volume volumeOf(Path filePath) throws IOException {
+    Volume volume = 1 < filePath.getNameCount()
+      ? volumes.get(filePath.getName(0).toString()) : null;
+    if (null == volume) {
+      throw new NoSuchFileException(filePath.toString(), null, "unknown volume");
+    }
+    return volume;
+  }
+
+  private static Path pathInVolume(Path filePath) {
+    return filePath.subpath(1, filePath.getNameCount());
+  }
+
+  private static long hash(String key) {
+    return hash(DigestUtils.md5(key.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static long hash(byte[] digest) {
+    long h = 0;
+    for (int i = 0; i < 8; i++) {
+      h = (h << 8) | (digest[i] & 0xff);
+    }
+    return h;
+  }
+
+  @FunctionalInterface
+  private interface VolumeWriter {
+
+    Path write(FileService fileService) throws IOException;
+  }
+
+  /**
+   * 卷，通常对应一块磁盘
+   */
+  public static final class Volume {
+
+    private final String name;
+    private final FileService fileService;
+    private final int weight;
+    private final Semaphore writePermits;
+
+    /**
+     * @param name                卷名，作为返回路径的第一级目录，创建后不能修改
+     * @param fileService         卷上的文件服务
+     * @param weight              权重，如按容量或吞吐设置
+     * @param maxConcurrentWrites 同时写入的上限
+     */
+    public Volume(String name, FileService fileService, int weight, int maxConcurrentWrites) {
+      if (StringUtils.isBlank(name) || StringUtils.containsAny(name, '/', '\\')) {
+        throw new IllegalArgumentException("invalid volume name: " + name);
+      }
+      if (null == fileService || 1 > weight || 1 > maxConcurrentWrites) {
+        throw new IllegalArgumentException(
+          "invalid volume: " + name + ", weight=" + weight + ", writes=" + maxConcurrentWrites);
+      }
+
+      this.name = name;
+      this.fileService = fileService;
+      this.weight = weight;
+      this.writePermits = new Semaphore(maxConcurrentWrites);
+    }
+
+    public String name() {
+      return name;
+    }
+
+    public FileService fileService() {
+      return fileService;
+    }
+
+    public int weight() {
+      return weight;
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package org.easyweb4j.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 有界的直接缓冲池，按2的幂分级，避免频繁分配直接内存
+ * <p>
+ * 每个线程每级缓存一个缓冲，归还和获取优先走线程本地，无竞争；其余放入共享队列，总字节数有上限，
+ * 超出时丢弃由GC回收。超过最大级别的请求直接分配，不入池。
+ * 开启泄漏检测时借出的是缓冲的视图，视图未归还就被回收时记录借出位置并回收底层缓冲
+ *
+ * @author Ray(linxray @ gmail.com)
+ * @date 2026/10/19
+ * @since 1.0
+ */
+public class DirectBufferPool {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DirectBufferPool.class);
+
+  /**
+   * 最小级别4KB
+   */
+  private static final int MIN_SHIFT = 12;
+
+  private static final DirectBufferPool SHARED =
+    new DirectBufferPool(1024 * 1024, 64L * 1024 * 1024, LOGGER.isDebugEnabled());
+
+  private final int maxShift;
+  private final long maxPooledBytes;
+  private final boolean leakDetection;
+
+  private final List<Queue<ByteBuffer>> sharedQueues = new ArrayList<>();
+  private final AtomicLong pooledBytes = new AtomicLong();
+  private final ThreadLocal<ByteBuffer[]> localBuffers;
+
+  private final ReferenceQueue<ByteBuffer> leakQueue = new ReferenceQueue<>();
+  private final Map<Integer, List<LeakTracker>> trackers = new HashMap<>();
+  private final LongAdder leakCount = new LongAdder();
+
+  /**
+   * @param maxBufferSize  最大级别，向上取2的幂，超过的请求不入池
+   * @param maxPooledBytes 共享队列中的字节数上限，不含线程本地缓存
+   * @param leakDetection  是否检测未归还的缓冲，有额外开销，用于调试
+   */
+  public DirectBufferPool(int maxBufferSize, long maxPooledBytes, boolean leakDetection) {
+    if (1 > maxBufferSize || 0 > maxPooledBytes) {
+      throw new IllegalArgumentException(
+        "invalid pool size: " + maxBufferSize + ", " + maxPooledBytes);
+    }
+
+    this.maxShift = Math.max(MIN_SHIFT, shiftOf(maxBufferSize));
+    this.maxPooledBytes = maxPooledBytes;
+    this.leakDetection = leakDetection;
+    for (int shift = MIN_SHIFT; shift <= maxShift; shift++) {
+      sharedQueues.add(new ConcurrentLinkedQueue<>());
+    }
+    int classes = sharedQueues.size();
+    this.localBuffers = ThreadLocal.withInitial(() -> new ByteBuffer[classes]);
+  }
+
+  /**
+   * 默认的共享池，最大级别1MB，共享队列上限64MB，日志为debug级别时开启泄漏检测
+   */
+  public static DirectBufferPool shared() {
+    return SHARED;
+  }
+
+  /**
+   * 借出缓冲，使用后需{@link #release}
+   *
+   * @param size 需要的字节数
+   * @return 位置为0，限制为size的直接缓冲，容量可能更大
+   */
+  public ByteBuffer acquire(int size) {
+    if (0 > size) {
+      throw new IllegalArgumentException("size must not be negative: " + size);
+    }
+    if (leakDetection) {
+      reclaimLeaks();
+    }
+
+    int shift = Math.max(MIN_SHIFT, shiftOf(size));
+    if (shift > maxShift) {
+      return ByteBuffer.allocateDirect(size);
+    }
+
+    int index = shift - MIN_SHIFT;
+    ByteBuffer[] locals = localBuffers.get();
+    ByteBuffer buffer = locals[index];
+    if (null != buffer) {
+      locals[index] = null;
+    } else {
+      buffer = sharedQueues.get(index).poll();
+      if (null != buffer) {
+        pooledBytes.addAndGet(-buffer.capacity());
+      } else {
+        buffer = ByteBuffer.allocateDirect(1 << shift);
+      }
+    }
+
+    buffer.clear().limit(size);
+    return leakDetection ? track(buffer) : buffer;
+  }
+
+  /**
+   * 归还缓冲，归还后不能再使用；不属于任何级别的缓冲直接丢弃
+   *
+   * @param buffer 借出的缓冲
+   * @throws IllegalStateException 开启泄漏检测时，重复归还或不是从池中借出
+   */
+  public void release(ByteBuffer buffer) {
+    if (null == buffer || !buffer.isDirect() || buffer.capacity() != classSize(buffer)) {
+      return;
+    }
+
+    if (leakDetection) {
+      ByteBuffer pooled = untrack(buffer);
+      if (null == pooled) {
+        throw new IllegalStateException("buffer not acquired or already released");
+      }
+      buffer = pooled;
+    }
+    recycle(buffer);
+  }
+
+  /**
+   * 共享队列中的字节数
+   */
+  public long pooledBytes() {
+    return pooledBytes.get();
+  }
+
+  /**
+   * 已发现的泄漏数，未开启检测时为0
+   */
+  public long leakCount() {
+    if (leakDetection) {
+      reclaimLeaks();
+    }
+    return leakCount.sum();
+  }
+
+  private void recycle(ByteBuffer buffer) {
+    int index = shiftOf(buffer.capacity()) - MIN_SHIFT;
+    ByteBuffer[] locals = localBuffers.get();
+    if (null == locals[index]) {
+      locals[index] = buffer;
+      return;
+    }
+
+    if (maxPooledBytes >= pooledBytes.addAndGet(buffer.capacity())) {
+      sharedQueues.get(index).offer(buffer);
+    } else {
+      pooledBytes.addAndGet(-buffer.capacity());
+    }
+  }
+
+  /**
+   * 缓冲容量所在级别的大小，不在级别范围内时返回-1
+   */
+  private int classSize(ByteBuffer buffer) {
+    int shift = shiftOf(buffer.capacity());
+    return MIN_SHIFT <= shift && shift <= maxShift ? 1 << shift : -1;
+  }
+
+  private ByteBuffer track(ByteBuffer pooled) {
+    ByteBuffer view = pooled.duplicate();
+    LeakTracker tracker = new LeakTracker(view, pooled, leakQueue);
+    synchronized (trackers) {
+      trackers.computeIfAbsent(tracker.hash, hash -> new ArrayList<>(1)).add(tracker);
+    }
+    return view;
+  }
+
+  private ByteBuffer untrack(ByteBuffer view) {
+    int hash = System.identityHashCode(view);
+    synchronized (trackers) {
+      List<LeakTracker> candidates = trackers.get(hash);
+      if (null == candidates) {
+        return null;
+      }
+
+      for (Iterator<LeakTracker> iterator = candidates.iterator(); iterator.hasNext(); ) {
+        LeakTracker tracker = iterator.next();
+        if (view == tracker.get()) {
+          iterator.remove();
+          if (candidates.isEmpty()) {
+            trackers.remove(hash);
+          }
+          tracker.clear();
+          return tracker.pooled;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * 借出的视图已被回收但未归还，记录借出位置后回收底层缓冲
+   */
+  private void reclaimLeaks() {
+    Reference<? extends ByteBuffer> reference;
+    while (null != (reference = leakQueue.poll())) {
+      LeakTracker tracker = (LeakTracker) reference;
+      boolean leaked;
+      synchronized (trackers) {
+        List<LeakTracker> candidates = trackers.get(tracker.hash);
+        leaked = null != candidates && candidates.remove(tracker);
+        if (null != candidates && candidates.isEmpty()) {
+          trackers.remove(tracker.hash);
+        }
+      }
+
+      if (leaked) {
+        leakCount.increment();
+        LOGGER.warn("direct buffer was not released before being garbage collected",
+          tracker.allocationSite);
+        recycle(tracker.pooled);
+      }
+    }
+  }
+
+  /**
+   * 不小于size的最小2的幂的指数
+   */
+  private static int shiftOf(int size) {
+    return 1 >= size ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+  }
+
+  private static final class LeakTracker extends WeakReference<ByteBuffer> {
+
+    private final ByteBuffer pooled;
+    private final int hash;
+    private final Throwable allocationSite;
+
+    private LeakTracker(ByteBuffer view, ByteBuffer pooled, ReferenceQueue<ByteBuffer> queue) {
+      super(view, queue);
+      this.pooled = pooled;
+      this.hash = System.identityHashCode(view);
+      this.allocationSite = new Throwable("buffer acquired here");
+    }
+  }
+}
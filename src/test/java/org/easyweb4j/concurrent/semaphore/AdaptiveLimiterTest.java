@@ -0,0 +1,77 @@
+package org.easyweb4j.concurrent.semaphore;
+
+import java.util.concurrent.TimeUnit;
+import org.easyweb4j.concurrent.semaphore.AdaptiveLimiter.Outcome;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class AdaptiveLimiterTest {
+
+  @Test
+  public void aimd() {
+    AdaptiveLimiter limiter = Semaphores.newAimdLimiter(10, 1, 50);
+    runRounds(limiter, 100, Outcome.SUCCESS, TimeUnit.MILLISECONDS.toNanos(10));
+    Assert.assertEquals(limiter.limit(), 50);
+
+    runRounds(limiter, 10, Outcome.DROPPED, TimeUnit.MILLISECONDS.toNanos(10));
+    Assert.assertTrue(limiter.limit() < 50, "limit " + limiter.limit());
+    Assert.assertEquals(limiter.inflight(), 0);
+  }
+
+  @Test
+  public void vegasBacksOffOnLatency() {
+    AdaptiveLimiter limiter = Semaphores.newVegasLimiter(10, 1, 200);
+    runRounds(limiter, 50, Outcome.SUCCESS, TimeUnit.MILLISECONDS.toNanos(10));
+    int grown = limiter.limit();
+    Assert.assertTrue(grown > 10, "limit " + grown);
+
+    // 延迟翻倍，排队变长
+    runRounds(limiter, 1, Outcome.SUCCESS, TimeUnit.MILLISECONDS.toNanos(20));
+    Assert.assertTrue(limiter.limit() < grown, "limit " + limiter.limit());
+  }
+
+  @Test
+  public void gradientBacksOffOnLatency() {
+    AdaptiveLimiter limiter = Semaphores.newGradientLimiter(10, 1, 200);
+    runRounds(limiter, 50, Outcome.SUCCESS, TimeUnit.MILLISECONDS.toNanos(10));
+    int grown = limiter.limit();
+    Assert.assertTrue(grown > 10, "limit " + grown);
+
+    runRounds(limiter, 1, Outcome.SUCCESS, TimeUnit.MILLISECONDS.toNanos(40));
+    Assert.assertTrue(limiter.limit() < grown, "limit " + limiter.limit());
+  }
+
+  @Test(timeOut = 10_000)
+  public void acquireBlocksAtLimit() throws InterruptedException {
+    AdaptiveLimiter limiter = Semaphores.newAimdLimiter(1, 1, 1);
+    limiter.acquire();
+    Assert.assertFalse(limiter.tryAcquire());
+
+    Thread releaser = new Thread(() -> {
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      limiter.release(Outcome.IGNORED, 0);
+    });
+    releaser.start();
+
+    limiter.acquire();
+    Assert.assertEquals(limiter.inflight(), 1);
+    releaser.join();
+  }
+
+  private void runRounds(AdaptiveLimiter limiter, int rounds, Outcome outcome, long latency) {
+    for (int r = 0; r < rounds; r++) {
+      int acquired = 0;
+      while (limiter.tryAcquire()) {
+        acquired++;
+      }
+
+      for (int i = 0; i < acquired; i++) {
+        limiter.release(outcome, latency);
+      }
+    }
+  }
+}
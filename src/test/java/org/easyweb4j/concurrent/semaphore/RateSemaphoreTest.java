@@ -1,11 +1,22 @@
 package org.easyweb4j.concurrent.semaphore;
 
 import com.google.common.base.Stopwatch;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
+import javax.management.ObjectName;
+import org.easyweb4j.concurrent.semaphore.impl.PersistentTimeRateSemaphore;
+import org.easyweb4j.concurrent.semaphore.impl.TimeRateSemaphore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
@@ -15,6 +26,36 @@ public class RateSemaphoreTest {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(RateSemaphoreTest.class);
 
+  private static class ManualRateClock implements RateClock {
+
+    private long nanos;
+    private long millis;
+
+    ManualRateClock(LocalDateTime start) {
+      this.millis = start.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    void advance(Duration duration) {
+      nanos += duration.toNanos();
+      millis += duration.toMillis();
+    }
+
+    @Override
+    public long nanoTime() {
+      return nanos;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+      return millis;
+    }
+
+    @Override
+    public ZoneId zone() {
+      return ZoneOffset.UTC;
+    }
+  }
+
   @Test(timeOut = 30_000)
   public void timeRateSemaphore() throws Exception {
     int threadSize = 20;
@@ -125,4 +166,289 @@ public class RateSemaphoreTest {
     }
 
   }
+
+  @Test(timeOut = 30_000)
+  public void timeRateSemaphoreReserve() throws Exception {
+    try (RateSemaphore rateSemaphore = Semaphores.newRateSemaphoreDuration(2, "PT1S")) {
+      Assert.assertEquals(rateSemaphore.reserve(1), 0);
+      Assert.assertEquals(rateSemaphore.reserve(1), 0);
+
+      long nextPeriod = rateSemaphore.reserve(1);
+      Assert.assertTrue(0 < nextPeriod && nextPeriod <= TimeUnit.SECONDS.toNanos(1),
+        "wait " + nextPeriod);
+
+      // 第二个周期剩余1个，第三个周期1个
+      long twoPeriods = rateSemaphore.reserve(2);
+      Assert.assertTrue(twoPeriods > TimeUnit.SECONDS.toNanos(1), "wait " + twoPeriods);
+      Assert.assertFalse(rateSemaphore.tryAcquire());
+    }
+  }
+
+  @Test(timeOut = 30_000)
+  public void smoothRateSemaphoreReserve() throws Exception {
+    try (RateSemaphore rateSemaphore = Semaphores.newSmoothRateSemaphore(10, "PT1S")) {
+      Assert.assertEquals(rateSemaphore.reserve(1), 0);
+
+      long wait = rateSemaphore.reserve(5);
+      Assert.assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(50), "wait " + wait);
+
+      long waitAfterBatch = rateSemaphore.reserve(1);
+      Assert.assertTrue(waitAfterBatch - wait > TimeUnit.MILLISECONDS.toNanos(400),
+        "wait " + waitAfterBatch);
+      Assert.assertFalse(rateSemaphore.tryAcquire());
+    }
+  }
+
+  @Test(timeOut = 30_000)
+  public void warmingUpRateSemaphore() throws Exception {
+    try (RateSemaphore rateSemaphore = Semaphores
+      .newWarmingUpRateSemaphore(10, "PT1S", "PT2S")) {
+      rateSemaphore.reserve(1);
+      long coldWait = rateSemaphore.reserve(1);
+      long previous = coldWait;
+      for (int i = 0; i < 5; i++) {
+        long next = rateSemaphore.reserve(1);
+        Assert.assertTrue(next - previous < coldWait, "interval " + (next - previous));
+        previous = next;
+      }
+
+      // 冷启动间隔应大于稳定间隔100ms
+      Assert.assertTrue(coldWait > TimeUnit.MILLISECONDS.toNanos(100), "wait " + coldWait);
+    }
+  }
+
+  @Test(timeOut = 30_000)
+  public void compositeRateSemaphoreRollback() throws Exception {
+    try (RateSemaphore global = Semaphores.newRateSemaphoreDuration(3, "PT10S");
+      RateSemaphore tenantA = Semaphores.newRateSemaphoreDuration(2, "PT10S");
+      RateSemaphore tenantB = Semaphores.newRateSemaphoreDuration(2, "PT10S")) {
+      RateSemaphore requestA = Semaphores.newCompositeRateSemaphore(global, tenantA);
+      RateSemaphore requestB = Semaphores.newCompositeRateSemaphore(tenantB, global);
+
+      Assert.assertTrue(requestA.tryAcquire());
+      Assert.assertTrue(requestA.tryAcquire());
+      // 租户A已满，全局配额需要回滚
+      Assert.assertFalse(requestA.tryAcquire());
+
+      Assert.assertTrue(requestB.tryAcquire());
+      // 全局已满，租户B配额需要回滚
+      Assert.assertFalse(requestB.tryAcquire());
+      Assert.assertTrue(tenantB.tryAcquire());
+      Assert.assertFalse(tenantB.tryAcquire());
+    }
+  }
+
+  @Test(timeOut = 30_000)
+  public void compositeRateSemaphoreBlocking() throws Exception {
+    try (RateSemaphore global = Semaphores.newRateSemaphoreDuration(1, "PT1S");
+      RateSemaphore tenant = Semaphores.newRateSemaphoreDuration(5, "PT10S")) {
+      RateSemaphore request = Semaphores.newCompositeRateSemaphore(global, tenant);
+
+      long curMS = System.currentTimeMillis();
+      for (int i = 0; i < 3; i++) {
+        request.acquire();
+      }
+      long duration = System.currentTimeMillis() - curMS;
+
+      Assert.assertTrue(duration >= 1900, "use " + duration);
+      Assert.assertTrue(tenant.tryAcquire(2));
+      Assert.assertFalse(tenant.tryAcquire());
+    }
+  }
+
+  @Test
+  public void timeRateSemaphoreCalendarMonth() throws Exception {
+    ManualRateClock clock = new ManualRateClock(LocalDateTime.of(2026, 1, 31, 23, 59, 59));
+    try (RateSemaphore rateSemaphore = new TimeRateSemaphore(2, Period.ofMonths(1), clock)) {
+      Assert.assertTrue(rateSemaphore.tryAcquire(2));
+      Assert.assertFalse(rateSemaphore.tryAcquire());
+
+      // 自然月切换，无等待者也会重置
+      clock.advance(Duration.ofSeconds(1));
+      Assert.assertTrue(rateSemaphore.tryAcquire(2));
+      Assert.assertFalse(rateSemaphore.tryAcquire());
+
+      clock.advance(Duration.ofDays(27));
+      Assert.assertFalse(rateSemaphore.tryAcquire());
+      clock.advance(Duration.ofDays(1));
+      Assert.assertTrue(rateSemaphore.tryAcquire());
+    }
+  }
+
+  @Test
+  public void timeRateSemaphoreSubSecond() throws Exception {
+    ManualRateClock clock = new ManualRateClock(LocalDateTime.of(2026, 1, 1, 0, 0));
+    try (RateSemaphore rateSemaphore = new TimeRateSemaphore(1, Duration.ofMillis(100), clock)) {
+      Assert.assertTrue(rateSemaphore.tryAcquire());
+      Assert.assertFalse(rateSemaphore.tryAcquire());
+
+      clock.advance(Duration.ofMillis(99));
+      Assert.assertFalse(rateSemaphore.tryAcquire());
+      Assert.assertEquals(rateSemaphore.reserve(1), TimeUnit.MILLISECONDS.toNanos(1));
+
+      // 预约占用了下一个周期
+      clock.advance(Duration.ofMillis(1));
+      Assert.assertFalse(rateSemaphore.tryAcquire());
+      clock.advance(Duration.ofMillis(100));
+      Assert.assertTrue(rateSemaphore.tryAcquire());
+    }
+  }
+
+  @Test
+  public void persistentRateSemaphore() throws Exception {
+    Path stateFile = Files.createTempFile("rate-semaphore", ".state");
+    ManualRateClock clock = new ManualRateClock(LocalDateTime.of(2026, 3, 10, 8, 0));
+    try {
+      RateSemaphore closing = new PersistentTimeRateSemaphore(10, Period.ofDays(1), stateFile, 4,
+        clock);
+      Assert.assertTrue(closing.tryAcquire(7));
+      closing.close();
+      // 关闭后的获取不再写入状态文件，重复关闭无影响
+      Assert.assertTrue(closing.tryAcquire());
+      closing.close();
+
+      // 正常关闭记录精确值
+      try (RateSemaphore rateSemaphore = new PersistentTimeRateSemaphore(10, Period.ofDays(1),
+        stateFile, 4, clock)) {
+        Assert.assertTrue(rateSemaphore.tryAcquire(3));
+        Assert.assertFalse(rateSemaphore.tryAcquire());
+      }
+
+      // 下一个自然日重新计数
+      clock.advance(Duration.ofDays(1));
+      RateSemaphore crashed = new PersistentTimeRateSemaphore(10, Period.ofDays(1), stateFile, 4,
+        clock);
+      Assert.assertTrue(crashed.tryAcquire(5));
+
+      // 未关闭即重启，按批次向上取整恢复，不会超发
+      try (RateSemaphore rateSemaphore = new PersistentTimeRateSemaphore(10, Period.ofDays(1),
+        stateFile, 4, clock)) {
+        Assert.assertTrue(rateSemaphore.tryAcquire(2));
+        Assert.assertFalse(rateSemaphore.tryAcquire());
+      }
+    } finally {
+      Files.deleteIfExists(stateFile);
+    }
+  }
+
+  @Test(timeOut = 30_000)
+  public void sharedMemoryRateSemaphore() throws Exception {
+    Path stateFile = Files.createTempFile("rate-semaphore", ".shm");
+    try (RateSemaphore processA = Semaphores
+      .newSharedRateSemaphoreDuration(3, "PT1S", stateFile);
+      RateSemaphore processB = Semaphores.newSharedRateSemaphoreDuration(3, "PT1S", stateFile)) {
+      Assert.assertTrue(processA.tryAcquire(2));
+      Assert.assertTrue(processB.tryAcquire());
+      Assert.assertFalse(processA.tryAcquire());
+      Assert.assertFalse(processB.tryAcquire());
+
+      long curMS = System.currentTimeMillis();
+      processB.acquire(3);
+      long duration = System.currentTimeMillis() - curMS;
+      Assert.assertTrue(0 < duration && duration <= 1100, "use " + duration);
+      Assert.assertFalse(processA.tryAcquire());
+    } finally {
+      Files.deleteIfExists(stateFile);
+    }
+  }
+
+  @Test(timeOut = 30_000)
+  public void sharedMemoryRateSemaphoreInterrupted() throws Exception {
+    Path stateFile = Files.createTempFile("rate-semaphore", ".shm");
+    try (RateSemaphore rateSemaphore = Semaphores
+      .newSharedRateSemaphoreDuration(3, "PT1S", stateFile)) {
+      boolean[] results = new boolean[2];
+      Thread interrupted = new Thread(() -> {
+        Thread.currentThread().interrupt();
+        results[0] = rateSemaphore.tryAcquire();
+        results[1] = Thread.currentThread().isInterrupted();
+      });
+      interrupted.start();
+      interrupted.join();
+      Assert.assertTrue(results[0]);
+      // 中断标记保留
+      Assert.assertTrue(results[1]);
+
+      // 被中断的调用不影响其他线程
+      Assert.assertTrue(rateSemaphore.tryAcquire(2));
+      Assert.assertFalse(rateSemaphore.tryAcquire());
+    } finally {
+      Files.deleteIfExists(stateFile);
+    }
+  }
+
+  @Test(timeOut = 30_000)
+  public void rateSemaphoreStats() throws Exception {
+    try (RateSemaphore rateSemaphore = Semaphores.newRateSemaphoreDuration(2, "PT1S")) {
+      Assert.assertTrue(rateSemaphore.tryAcquire());
+      Assert.assertTrue(rateSemaphore.tryAcquire());
+      Assert.assertFalse(rateSemaphore.tryAcquire());
+      rateSemaphore.acquire();
+
+      RateSemaphoreStats stats = rateSemaphore.stats();
+      Assert.assertEquals(stats.grantedCount(), 3);
+      Assert.assertEquals(stats.deniedCount(), 1);
+      Assert.assertEquals(stats.waitCount(), 1);
+      Assert.assertTrue(stats.maxWaitNanos() > TimeUnit.MILLISECONDS.toNanos(500),
+        stats.toString());
+      Assert.assertTrue(stats.waitPercentileNanos(0.99) >= stats.maxWaitNanos(),
+        stats.toString());
+      Assert.assertEquals(stats.utilization(), 0.5, 0.001);
+
+      ObjectName objectName = Semaphores.registerMBean("stats-test", rateSemaphore);
+      try {
+        Assert.assertEquals(ManagementFactory.getPlatformMBeanServer()
+          .getAttribute(objectName, "DeniedCount"), 1L);
+      } finally {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      }
+    }
+  }
+
+  @Test
+  public void rateSemaphoreDefaults() {
+    // 只实现原有方法的第三方实现
+    RateSemaphore rateSemaphore = new RateSemaphore() {
+      @Override
+      public void acquire() {
+      }
+
+      @Override
+      public void acquire(int permits) {
+      }
+
+      @Override
+      public void release() {
+      }
+
+      @Override
+      public void release(int permits) {
+      }
+
+      @Override
+      public boolean tryAcquire() {
+        return true;
+      }
+
+      @Override
+      public boolean tryAcquire(int permits) {
+        return true;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+
+    RateSemaphoreStats stats = rateSemaphore.stats();
+    Assert.assertEquals(stats.grantedCount(), 0);
+    Assert.assertEquals(stats.waitPercentileNanos(0.99), 0);
+    Assert.assertEquals(stats.utilization(), 0, 0.001);
+    try {
+      rateSemaphore.reserve(1);
+      Assert.fail("expected UnsupportedOperationException");
+    } catch (UnsupportedOperationException e) {
+      Assert.assertTrue(e.getMessage().endsWith("does not support reserve"));
+    }
+  }
 }
@@ -1,18 +1,45 @@
 package org.easyweb4j.storage.file;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.RandomUtils;
+import org.easyweb4j.concurrent.semaphore.Semaphores;
 import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
@@ -84,4 +111,798 @@ public class FileServiceTest extends AbstractFileService {
     readStr = fileService.read(path, Charset.defaultCharset());
     Assert.assertEquals(writeValue, readStr);
   }
+
+  @Test
+  public void storeStreaming() throws IOException {
+    byte[] bigContent = RandomUtils.nextBytes(200 * 1024 + 7);
+
+    Path path = fileService.storeFileUsingHash(new ByteArrayInputStream(bigContent), null, "bin");
+    Assert.assertEquals(Files.readAllBytes(prefix().resolve(path)), bigContent);
+
+    Path source = Files.createTempFile("file-service", ".bin");
+    try {
+      Files.write(source, bigContent);
+      path = fileService.storeFileUsingDate(source, null, "bin");
+      Assert.assertEquals(Files.readAllBytes(prefix().resolve(path)), bigContent);
+    } finally {
+      Files.delete(source);
+    }
+  }
+
+  @Test
+  public void readRangeAndMapped() throws IOException {
+    byte[] bigContent = RandomUtils.nextBytes((int) mappedReadThreshold() + 13);
+    Path path = fileService.storeFileUsingHash(ByteBuffer.wrap(bigContent), null, "bin");
+
+    ByteBuffer mapped = fileService.read(path);
+    Assert.assertTrue(mapped.isReadOnly());
+    Assert.assertEquals(mapped, ByteBuffer.wrap(bigContent));
+    Assert.assertEquals(fileService.size(path), bigContent.length);
+
+    ByteBuffer range = ByteBuffer.allocate(20);
+    Assert.assertEquals(fileService.read(path, bigContent.length - 10, range), 10);
+    range.flip();
+    Assert.assertEquals(range, ByteBuffer.wrap(bigContent, bigContent.length - 10, 10));
+    Assert.assertEquals(fileService.read(path, bigContent.length, ByteBuffer.allocate(1)), -1);
+
+    try (InputStream inputStream = fileService.openInputStream(path)) {
+      Assert.assertEquals(IOUtils.toByteArray(inputStream), bigContent);
+    }
+
+    // 稀疏文件超过单个ByteBuffer的上限，整个读取时提示改用通道或范围读取
+    long hugeSize = Integer.MAX_VALUE + 1L;
+    try (FileChannel channel = FileChannel.open(prefix().resolve(path),
+      StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[]{1}), hugeSize - 1);
+    }
+    try {
+      fileService.read(path);
+      Assert.fail("expected IOException");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains("openReadChannel"), e.getMessage());
+    }
+    ByteBuffer last = ByteBuffer.allocate(1);
+    Assert.assertEquals(fileService.read(path, hugeSize - 1, last), 1);
+    Assert.assertEquals(last.get(0), 1);
+    Assert.assertTrue(fileService.delete(path));
+  }
+
+  @Test
+  public void storeByContent() throws IOException {
+    byte[] sameContent = RandomUtils.nextBytes(100 * 1024 + 3);
+
+    Path path = fileService.storeFileUsingContent(ByteBuffer.wrap(sameContent), "bin");
+    Path streamPath = fileService
+      .storeFileUsingContent(new ByteArrayInputStream(sameContent), "bin");
+    Assert.assertEquals(streamPath, path);
+    Assert.assertEquals(path.getFileName().toString(), DigestUtils.sha256Hex(sameContent) + ".bin");
+    Assert.assertEquals(Files.readAllBytes(prefix().resolve(path)), sameContent);
+
+    // 两次引用，第一次删除后仍存在
+    Assert.assertTrue(fileService.delete(path));
+    Assert.assertTrue(Files.exists(prefix().resolve(path)));
+    Assert.assertTrue(fileService.delete(path));
+    Assert.assertFalse(Files.exists(prefix().resolve(path)));
+    Assert.assertFalse(fileService.delete(path));
+  }
+
+  @Test
+  public void cachingRead() throws IOException {
+    byte[] hotContent = RandomUtils.nextBytes(1024);
+    CachingFileService cachingFileService = new CachingFileService(fileService, 4096, 2048, true);
+    Path path = cachingFileService.storeFileUsingHash(ByteBuffer.wrap(hotContent), null, "bin");
+
+    Assert.assertEquals(cachingFileService.read(path), ByteBuffer.wrap(hotContent));
+    Assert.assertEquals(cachingFileService.read(path), ByteBuffer.wrap(hotContent));
+    Assert.assertEquals(cachingFileService.missCount(), 1);
+    Assert.assertEquals(cachingFileService.hitCount(), 1);
+    Assert.assertEquals(cachingFileService.size(path), hotContent.length);
+
+    ByteBuffer range = ByteBuffer.allocate(10);
+    Assert.assertEquals(cachingFileService.read(path, 1020, range), 4);
+    range.flip();
+    Assert.assertEquals(range, ByteBuffer.wrap(hotContent, 1020, 4));
+
+    // 一次性读取的文件只进入试用段，不会淘汰热点文件
+    for (int i = 0; i < 4; i++) {
+      Path coldPath = fileService
+        .storeFileUsingHash(ByteBuffer.wrap(RandomUtils.nextBytes(1024)), null, "bin");
+      cachingFileService.read(coldPath);
+    }
+    Assert.assertTrue(cachingFileService.evictionCount() > 0);
+    Assert.assertTrue(cachingFileService.cachedBytes() <= 4096);
+    long hits = cachingFileService.hitCount();
+    cachingFileService.read(path);
+    Assert.assertEquals(cachingFileService.hitCount(), hits + 1);
+
+    Assert.assertTrue(cachingFileService.delete(path));
+    Assert.assertFalse(Files.exists(prefix().resolve(path)));
+
+    // 加载期间失效的内容不放入缓存
+    Path stalePath = fileService
+      .storeFileUsingHash(ByteBuffer.wrap(RandomUtils.nextBytes(1024)), null, "bin");
+    CachingFileService[] staleCache = new CachingFileService[1];
+    staleCache[0] = new CachingFileService(new ForwardingFileService(fileService) {
+      @Override
+      public ByteBuffer read(Path filePath) throws IOException {
+        ByteBuffer loaded = super.read(filePath);
+        staleCache[0].invalidate(filePath);
+        return loaded;
+      }
+    }, 4096, 2048, true);
+    staleCache[0].read(stalePath);
+    Assert.assertEquals(staleCache[0].cachedBytes(), 0);
+    Assert.assertTrue(staleCache[0].delete(stalePath));
+  }
+
+  @Test
+  public void asyncStoreAndRead() throws Exception {
+    byte[] asyncContent = RandomUtils.nextBytes(1024);
+    try (AsyncFileService asyncFileService = new DefaultAsyncFileService(fileService, 2, 16)) {
+      Path path = asyncFileService.storeFileUsingHash(ByteBuffer.wrap(asyncContent), null, "bin")
+        .get();
+      Assert.assertEquals(asyncFileService.read(path).get(), ByteBuffer.wrap(asyncContent));
+      Assert.assertEquals(asyncFileService.size(path).get().longValue(), asyncContent.length);
+
+      try {
+        asyncFileService.read(Paths.get("not-exists.bin")).get();
+        Assert.fail("expected NoSuchFileException");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof NoSuchFileException);
+      }
+    }
+  }
+
+  @Test
+  public void packedStoreAndCompact() throws IOException {
+    Path segmentDir = prefix().resolve("segments");
+    byte[] smallContent = RandomUtils.nextBytes(100);
+    byte[] garbage = RandomUtils.nextBytes(1000);
+    Path path;
+    Path garbagePath;
+    try (PackedFileService packedFileService = new PackedFileService(fileService, segmentDir,
+      1024, 2048)) {
+      garbagePath = packedFileService.storeFileUsingDate(ByteBuffer.wrap(garbage), null, "bin");
+      path = packedFileService.storeFileUsingHash(ByteBuffer.wrap(smallContent), null, ".bin");
+      Assert.assertTrue(path.startsWith(PackedFileService.PACK_DIR));
+      Assert.assertEquals(packedFileService.read(path), ByteBuffer.wrap(smallContent));
+      Assert.assertEquals(packedFileService.size(path), smallContent.length);
+
+      // 超过上限的交给被装饰的服务
+      Path bigPath = packedFileService
+        .storeFileUsingHash(ByteBuffer.wrap(RandomUtils.nextBytes(2000)), null, "bin");
+      Assert.assertFalse(bigPath.startsWith(PackedFileService.PACK_DIR));
+
+      // 写满后切换段，旧段可以压缩
+      packedFileService.storeFileUsingDate(ByteBuffer.wrap(garbage), null, "bin");
+      Assert.assertTrue(packedFileService.delete(garbagePath));
+      Assert.assertFalse(packedFileService.delete(garbagePath));
+      Assert.assertEquals(packedFileService.compact(0.5), garbage.length);
+      Assert.assertEquals(packedFileService.read(path), ByteBuffer.wrap(smallContent));
+    }
+
+    // 重启后从段文件恢复索引
+    try (PackedFileService packedFileService = new PackedFileService(fileService, segmentDir,
+      1024, 2048)) {
+      Assert.assertEquals(packedFileService.read(path), ByteBuffer.wrap(smallContent));
+      try {
+        packedFileService.read(garbagePath);
+        Assert.fail("expected NoSuchFileException");
+      } catch (NoSuchFileException e) {
+        Assert.assertEquals(e.getMessage(), garbagePath.toString());
+      }
+    }
+  }
+
+  @Test
+  public void packedSegmentRecovery() throws IOException {
+    Path segmentDir = prefix().resolve("recovery-segments");
+    List<Path> paths = new ArrayList<>();
+    try (PackedFileService packedFileService = new PackedFileService(fileService, segmentDir,
+      1024, 4096, DurabilityPolicy.perWrite())) {
+      for (int i = 0; i < 3; i++) {
+        paths.add(packedFileService.storeFileUsingDate(content.duplicate(), null, "bin"));
+      }
+    }
+    Path segmentFile = segmentDir.resolve("1.seg");
+    long segmentSize = Files.size(segmentFile);
+    Files.write(segmentDir.resolve("backup.seg"), new byte[0]);
+
+    // 残缺的尾部被截断，无关的文件被跳过
+    Files.write(segmentFile, new byte[]{0x50, 0x41, 0x4b}, StandardOpenOption.APPEND);
+    try (PackedFileService packedFileService = new PackedFileService(fileService, segmentDir,
+      1024, 4096)) {
+      for (Path path : paths) {
+        Assert.assertEquals(packedFileService.read(path), content);
+      }
+    }
+    Assert.assertEquals(Files.size(segmentFile), segmentSize);
+
+    // 中间的记录头损坏时启动失败，不截断之后的记录
+    byte[] segment = Files.readAllBytes(segmentFile);
+    segment[(int) segmentSize / 3] ^= 1;
+    Files.write(segmentFile, segment);
+    try {
+      new PackedFileService(fileService, segmentDir, 1024, 4096).close();
+      Assert.fail("expected corrupt record header");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().startsWith("corrupt record header"), e.getMessage());
+    }
+    Assert.assertEquals(Files.size(segmentFile), segmentSize);
+  }
+
+  @Test(timeOut = 10000)
+  public void groupCommitStore() throws Exception {
+    DurabilityPolicy groupCommit = DurabilityPolicy.groupCommit(20, TimeUnit.MILLISECONDS, 4);
+    FileService durableFileService = new FileServiceTest() {
+      @Override
+      protected DurabilityPolicy durabilityPolicy() {
+        return groupCommit;
+      }
+    };
+
+    ExecutorService executorService = Executors.newFixedThreadPool(6);
+    try {
+      List<Future<Path>> futures = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        futures.add(executorService.submit(() -> durableFileService
+          .storeFileUsingHash(ByteBuffer.wrap(RandomUtils.nextBytes(64)), null, "bin")));
+      }
+      for (Future<Path> future : futures) {
+        Assert.assertTrue(Files.exists(prefix().resolve(future.get())));
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test(timeOut = 10000)
+  public void concurrentStoreNeverClobbers() throws Exception {
+    ExecutorService executorService = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Path>> futures = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        futures.add(executorService.submit(() -> fileService
+          .storeFileUsingDate(ByteBuffer.wrap(RandomUtils.nextBytes(16)), null, "bin")));
+      }
+      Set<Path> paths = new HashSet<>();
+      for (Future<Path> future : futures) {
+        paths.add(future.get());
+      }
+      Assert.assertEquals(paths.size(), 200);
+
+      // 同名文件只有一个写入成功
+      String fileName = RandomStringUtils.randomAlphanumeric(16);
+      futures.clear();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executorService.submit(() -> fileService
+          .storeFileUsingDate(ByteBuffer.wrap(RandomUtils.nextBytes(16)), fileName, "bin")));
+      }
+      int stored = 0;
+      for (Future<Path> future : futures) {
+        try {
+          future.get();
+          stored++;
+        } catch (ExecutionException e) {
+          Assert.assertTrue(e.getCause() instanceof FileAlreadyExistsException);
+        }
+      }
+      Assert.assertEquals(stored, 1);
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  public void storeAfterDirectoryRemoved() throws IOException {
+    Path path = fileService.storeFileUsingDate(content, null, "bin");
+    Assert.assertEquals(path.getParent().toString(),
+      LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd")));
+
+    // 缓存的目录被外部删除后重新创建
+    FileUtils.deleteDirectory(prefix().resolve(path).getParent().toFile());
+    path = fileService.storeFileUsingDate(content, null, "bin");
+    Assert.assertTrue(Files.exists(prefix().resolve(path)));
+  }
+
+  @Test
+  public void compressedStoreAndRead() throws IOException {
+    FileService compressingFileService = new FileServiceTest() {
+      @Override
+      protected FileCodec fileCodec(String suffix) {
+        return "json".equals(suffix) ? new DeflateFileCodec() : null;
+      }
+    };
+
+    StringBuilder json = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      json.append("{\"id\":").append(i).append(",\"name\":\"item\"},");
+    }
+    byte[] jsonBytes = json.toString().getBytes(StandardCharsets.UTF_8);
+
+    Path path = compressingFileService.storeFileUsingDate(ByteBuffer.wrap(jsonBytes), null, "json");
+    Assert.assertTrue(Files.size(prefix().resolve(path)) < jsonBytes.length / 5);
+    Assert.assertEquals(compressingFileService.read(path), ByteBuffer.wrap(jsonBytes));
+    Assert.assertEquals(compressingFileService.read(path, StandardCharsets.UTF_8), json.toString());
+    Assert.assertEquals(compressingFileService.size(path), jsonBytes.length);
+
+    ByteBuffer range = ByteBuffer.allocate(16);
+    Assert.assertEquals(compressingFileService.read(path, 100, range), 16);
+    range.flip();
+    Assert.assertEquals(range, ByteBuffer.wrap(jsonBytes, 100, 16));
+
+    path = compressingFileService
+      .storeFileUsingContent(new ByteArrayInputStream(jsonBytes), "json");
+    Assert.assertEquals(path.getFileName().toString(), DigestUtils.sha256Hex(jsonBytes) + ".json");
+    try (InputStream inputStream = compressingFileService.openInputStream(path)) {
+      Assert.assertEquals(IOUtils.toByteArray(inputStream), jsonBytes);
+    }
+
+    // 未编码的文件照常读取
+    path = compressingFileService.storeFileUsingHash(ByteBuffer.wrap(jsonBytes), null, "txt");
+    Assert.assertEquals(Files.size(prefix().resolve(path)), jsonBytes.length);
+
+    // 原始内容恰好以编码头开头时不按编码读取
+    ByteBuffer headerLike = ByteBuffer.allocate(32);
+    headerLike.putInt(0x45574331).put(DeflateFileCodec.ID).put(new byte[3]).putLong(8).clear();
+    path = compressingFileService.storeFileUsingDate(headerLike.duplicate(), null, "bin");
+    Assert.assertEquals(compressingFileService.read(path), headerLike);
+    Assert.assertEquals(compressingFileService.size(path), 32);
+    Assert.assertTrue(compressingFileService.delete(path));
+  }
+
+  @Test
+  public void shardedStoreAndRead() throws IOException {
+    List<ShardedFileService.Volume> volumes = new ArrayList<>();
+    for (String name : new String[]{"disk-a", "disk-b"}) {
+      FileService volumeFileService = new FileServiceTest() {
+        @Override
+        protected Path prefix() {
+          return super.prefix().resolve("volumes").resolve(name);
+        }
+      };
+      volumes.add(new ShardedFileService.Volume(name, volumeFileService, 1, 4));
+    }
+    ShardedFileService shardedFileService = new ShardedFileService(volumes);
+
+    Set<String> usedVolumes = new HashSet<>();
+    for (int i = 0; i < 32; i++) {
+      byte[] shardContent = RandomUtils.nextBytes(32);
+      Path path = shardedFileService.storeFileUsingDate(ByteBuffer.wrap(shardContent), null, "bin");
+      usedVolumes.add(path.getName(0).toString());
+      Assert.assertEquals(shardedFileService.read(path), ByteBuffer.wrap(shardContent));
+      Assert.assertTrue(Files.exists(prefix().resolve("volumes").resolve(path)));
+    }
+    Assert.assertEquals(usedVolumes.size(), 2);
+
+    // 相同内容路由到同一个卷
+    byte[] sameContent = RandomUtils.nextBytes(32);
+    Path path = shardedFileService.storeFileUsingContent(ByteBuffer.wrap(sameContent), "bin");
+    Assert.assertEquals(shardedFileService.storeFileUsingContent(ByteBuffer.wrap(sameContent),
+      "bin"), path);
+    Assert.assertTrue(shardedFileService.delete(path));
+    Assert.assertTrue(shardedFileService.delete(path));
+    Assert.assertFalse(shardedFileService.delete(path));
+  }
+
+  @Test
+  public void checksumAndScrub() throws IOException {
+    AbstractFileService checkedFileService = new FileServiceTest() {
+      @Override
+      protected Path prefix() {
+        return super.prefix().resolve("scrub");
+      }
+
+      @Override
+      protected boolean checksumEnabled() {
+        return true;
+      }
+
+      @Override
+      protected boolean verifyChecksumOnRead() {
+        return true;
+      }
+    };
+
+    byte[] checkedContent = RandomUtils.nextBytes(100 * 1024);
+    Path path = checkedFileService.storeFileUsingDate(ByteBuffer.wrap(checkedContent), null, "bin");
+    Path streamPath = checkedFileService
+      .storeFileUsingHash(new ByteArrayInputStream(checkedContent), null, "bin");
+    checkedFileService.storeFileUsingContent(new ByteArrayInputStream(checkedContent), "bin");
+    Assert.assertTrue(checkedFileService.verify(path));
+    Assert.assertEquals(checkedFileService.read(streamPath), ByteBuffer.wrap(checkedContent));
+
+    ScrubReport report = checkedFileService.scrub(2, Semaphores.newRateSemaphore(10000));
+    Assert.assertEquals(report.checkedFiles(), 3);
+    Assert.assertTrue(report.corruptFiles().isEmpty());
+
+    // 翻转一个字节
+    Path absPath = prefix().resolve("scrub").resolve(path);
+    byte[] corrupted = Files.readAllBytes(absPath);
+    corrupted[1000] ^= 1;
+    Files.write(absPath, corrupted);
+    Assert.assertFalse(checkedFileService.verify(path));
+    try {
+      checkedFileService.read(path);
+      Assert.fail("expected checksum mismatch");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().startsWith("checksum mismatch"));
+    }
+
+    report = checkedFileService.scrub(2, null);
+    Assert.assertEquals(report.corruptFiles(), Collections.singletonList(path));
+
+    try {
+      checkedFileService.scrub(0, null);
+      Assert.fail("expected invalid parallelism");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().startsWith("parallelism must be positive"));
+    }
+  }
+
+  @Test
+  public void listByDateAndHashPrefix() throws IOException {
+    AbstractFileService listedFileService = new FileServiceTest() {
+      @Override
+      protected Path prefix() {
+        return super.prefix().resolve("list");
+      }
+
+      @Override
+      protected boolean manifestEnabled() {
+        return true;
+      }
+    };
+
+    List<Path> datePaths = new ArrayList<>();
+    List<Path> hashPaths = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      datePaths.add(listedFileService.storeFileUsingDate(content, null, "bin"));
+      hashPaths.add(listedFileService.storeFileUsingHash(content, null, "bin"));
+    }
+    Path contentPath = listedFileService.storeFileUsingContent(content, "bin");
+    listedFileService.storeFileUsingContent(content, "bin");
+
+    LocalDate today = LocalDate.now();
+    Set<Path> listed;
+    try (Stream<Path> paths = listedFileService.listByDate(today.minusDays(3), today)) {
+      listed = paths.parallel().collect(Collectors.toSet());
+    }
+    Assert.assertEquals(listed, new HashSet<>(datePaths));
+
+    String hash = hashPaths.get(0).getFileName().toString().substring(0, 6);
+    try (Stream<Path> paths = listedFileService.listByHashPrefix(hash)) {
+      Assert.assertEquals(paths.collect(Collectors.toList()),
+        Collections.singletonList(hashPaths.get(0)));
+    }
+    try (Stream<Path> paths = listedFileService.listByHashPrefix("")) {
+      listed = paths.parallel().collect(Collectors.toSet());
+    }
+    Set<Path> expected = new HashSet<>(hashPaths);
+    expected.add(contentPath);
+    Assert.assertEquals(listed, expected);
+
+    // 清单按写入顺序，重复内容只记录一次，已删除的不再列出
+    listedFileService.delete(datePaths.get(0));
+    try (Stream<Path> paths = listedFileService.listStored(today, today)) {
+      List<Path> stored = paths.collect(Collectors.toList());
+      Assert.assertEquals(stored.size(), 10);
+      Assert.assertEquals(stored.get(0), hashPaths.get(0));
+      Assert.assertFalse(stored.contains(datePaths.get(0)));
+    }
+
+    try {
+      listedFileService.listByHashPrefix("XY");
+      Assert.fail("expected invalid hash prefix");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().startsWith("invalid hash prefix"));
+    }
+  }
+
+  @Test
+  public void expireAndTierDayDirectories() throws IOException {
+    Path hotPrefix = prefix().resolve("retention").resolve("hot");
+    Path coldPrefix = prefix().resolve("retention").resolve("cold");
+    AbstractFileService tieredFileService = new FileServiceTest() {
+      @Override
+      protected Path prefix() {
+        return hotPrefix;
+      }
+
+      @Override
+      protected Path coldPrefix() {
+        return coldPrefix;
+      }
+
+      @Override
+      protected boolean manifestEnabled() {
+        return true;
+      }
+    };
+
+    LocalDate today = LocalDate.now();
+    Path todayPath = tieredFileService.storeFileUsingDate(content, null, "bin");
+    Path expiredPath = Paths.get(DateTimeFormatter.ofPattern("yyyy/MM/dd")
+      .format(today.minusDays(60)), "expired.bin");
+    Path warmPath = Paths.get(DateTimeFormatter.ofPattern("yyyy/MM/dd")
+      .format(today.minusDays(5)), "warm.bin");
+    for (Path path : new Path[]{expiredPath, warmPath}) {
+      Files.createDirectories(hotPrefix.resolve(path).getParent());
+      Files.write(hotPrefix.resolve(path), content.array());
+    }
+    // 上次删除被中断留下的过期目录
+    Path leftoverTrash = hotPrefix.resolve(TMP_DIR).resolve("expired-2020-01-01-1");
+    Files.createDirectories(leftoverTrash);
+    Files.write(leftoverTrash.resolve("leftover.bin"), content.array());
+    Path expiredManifest = hotPrefix.resolve(MANIFEST_DIR)
+      .resolve(DateTimeFormatter.ISO_LOCAL_DATE.format(today.minusDays(60)));
+    Files.write(expiredManifest, Collections.singletonList(expiredPath.toString()));
+
+    RetentionService retention = new RetentionService(tieredFileService, 30, 3,
+      Semaphores.newRateSemaphore(10000));
+    Assert.assertEquals(retention.runOnce(today), 2);
+    Assert.assertFalse(Files.exists(hotPrefix.resolve(expiredPath).getParent()));
+    Assert.assertFalse(Files.exists(hotPrefix.resolve(warmPath)));
+    Assert.assertTrue(Files.exists(coldPrefix.resolve(warmPath)));
+    Assert.assertFalse(Files.exists(expiredManifest));
+    Assert.assertFalse(Files.exists(leftoverTrash));
+    Assert.assertTrue(Files.exists(hotPrefix.resolve(MANIFEST_DIR)
+      .resolve(DateTimeFormatter.ISO_LOCAL_DATE.format(today))));
+    // 冷存储中的文件仍可按原路径读取、列出和校验
+    Assert.assertEquals(tieredFileService.read(warmPath), content);
+    Assert.assertEquals(tieredFileService.read(todayPath), content);
+    try (Stream<Path> listed = tieredFileService.listByDate(today.minusDays(5), today)) {
+      Assert.assertEquals(listed.collect(Collectors.toSet()),
+        new HashSet<>(Arrays.asList(warmPath, todayPath)));
+    }
+    ScrubReport report = tieredFileService.scrub(1, null);
+    Assert.assertEquals(report.checkedFiles() + report.uncheckedFiles(), 2);
+    Assert.assertEquals(retention.runOnce(today), 0);
+
+    // 当天目录过期后仍可写入
+    Assert.assertEquals(retention.runOnce(today.plusDays(40)), 2);
+    Assert.assertFalse(Files.exists(coldPrefix.resolve(warmPath)));
+    Assert.assertFalse(Files.exists(hotPrefix.resolve(todayPath)));
+    Path newPath = tieredFileService.storeFileUsingDate(content, null, "bin");
+    Assert.assertEquals(tieredFileService.read(newPath), content);
+
+    // 上次移动中断留下了部分文件时逐个复制，编码标记随文件移动
+    AbstractFileService encodingFileService = new FileServiceTest() {
+      @Override
+      protected Path prefix() {
+        return hotPrefix;
+      }
+
+      @Override
+      protected Path coldPrefix() {
+        return coldPrefix;
+      }
+
+      @Override
+      protected FileCodec fileCodec(String suffix) {
+        return "json".equals(suffix) ? new DeflateFileCodec() : null;
+      }
+    };
+    byte[] json = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+    Path encodedPath = encodingFileService.storeFileUsingDate(ByteBuffer.wrap(json), null, "json");
+    Files.createDirectories(coldPrefix.resolve(encodedPath).getParent());
+    Files.write(coldPrefix.resolve(encodedPath).resolveSibling("partial.bin"), content.array());
+    Assert.assertEquals(new RetentionService(encodingFileService, 30, 3, null)
+      .runOnce(today.plusDays(4)), 1);
+    Assert.assertFalse(Files.exists(hotPrefix.resolve(encodedPath).getParent()));
+    Assert.assertEquals(encodingFileService.read(encodedPath), ByteBuffer.wrap(json));
+
+    try {
+      new RetentionService(tieredFileService, 3, 3, null);
+      Assert.fail("expected invalid retention");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().startsWith("invalid retention"));
+    }
+  }
+
+  @Test
+  public void gatherStoreAndScatterRead() throws IOException {
+    byte[] header = "HEAD".getBytes(StandardCharsets.US_ASCII);
+    byte[] body = RandomUtils.nextBytes(200 * 1024);
+    byte[] trailer = "TAIL".getBytes(StandardCharsets.US_ASCII);
+    ByteBuffer directBody = ByteBuffer.allocateDirect(body.length);
+    directBody.put(body).flip();
+    ByteBuffer expected = ByteBuffer.allocate(header.length + body.length + trailer.length);
+    expected.put(header).put(body).put(trailer).flip();
+
+    FileService compressingFileService = new FileServiceTest() {
+      @Override
+      protected FileCodec fileCodec(String suffix) {
+        return "gz".equals(suffix) ? new DeflateFileCodec() : null;
+      }
+    };
+    PackedFileService packedFileService = new PackedFileService(fileService,
+      prefix().resolve("gather-segments"), 1024 * 1024, 4 * 1024 * 1024);
+    for (FileService service : new FileService[]{fileService, compressingFileService,
+      new CachingFileService(fileService, 4 * 1024 * 1024), packedFileService}) {
+      for (String suffix : new String[]{"bin", "gz"}) {
+        Path gathered = service.storeFileUsingHash(new ByteBuffer[]{ByteBuffer.wrap(header),
+          directBody.duplicate(), ByteBuffer.wrap(trailer)}, null, suffix);
+        Path heapGathered = service.storeFileUsingDate(new ByteBuffer[]{ByteBuffer.wrap(header),
+          ByteBuffer.wrap(body), ByteBuffer.wrap(trailer)}, null, suffix);
+        if (service == packedFileService) {
+          Assert.assertEquals(gathered.getName(0).toString(), PackedFileService.PACK_DIR);
+          Assert.assertEquals(heapGathered.getName(0).toString(), PackedFileService.PACK_DIR);
+        }
+        Assert.assertEquals(service.read(gathered), expected);
+        Assert.assertEquals(service.read(heapGathered), expected);
+
+        ByteBuffer headerDst = ByteBuffer.allocate(header.length);
+        ByteBuffer bodyDst = ByteBuffer.allocateDirect(body.length);
+        ByteBuffer trailerDst = ByteBuffer.allocate(16);
+        Assert.assertEquals(service.read(gathered, 0,
+          new ByteBuffer[]{headerDst, bodyDst, trailerDst}), expected.remaining());
+        Assert.assertEquals(headerDst.flip(), ByteBuffer.wrap(header));
+        Assert.assertEquals(bodyDst.flip(), ByteBuffer.wrap(body));
+        Assert.assertEquals(trailerDst.flip(), ByteBuffer.wrap(trailer));
+
+        ByteBuffer[] heapDsts = {ByteBuffer.allocate(100 * 1024), ByteBuffer.allocate(100 * 1024)};
+        Assert.assertEquals(service.read(heapGathered, header.length, heapDsts),
+          body.length);
+        Assert.assertEquals(heapDsts[1].flip(), ByteBuffer.wrap(body, 100 * 1024, 100 * 1024));
+        Assert.assertEquals(service.read(heapGathered, expected.remaining(),
+          new ByteBuffer[]{ByteBuffer.allocate(1)}), -1);
+      }
+    }
+    packedFileService.close();
+  }
+
+  @Test
+  public void scheduleInteractiveBeforeBackground() throws Exception {
+    List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    FileService recordingFileService = new ForwardingFileService(fileService) {
+      @Override
+      public Path storeFileUsingDate(ByteBuffer content, String fileName, String suffix)
+        throws IOException {
+        executed.add("store");
+        return super.storeFileUsingDate(content, fileName, suffix);
+      }
+
+      @Override
+      public ByteBuffer read(Path filePath) throws IOException {
+        executed.add("read");
+        return super.read(filePath);
+      }
+    };
+    Path path = fileService.storeFileUsingDate(content, null, "bin");
+
+    IoScheduler scheduler = new IoScheduler(1)
+      .limit(IoScheduler.IoClass.BACKGROUND, 1, Semaphores.newRateSemaphore(10000));
+    IoSchedulingFileService scheduledFileService =
+      new IoSchedulingFileService(recordingFileService, scheduler);
+    FileService bulkFileService = scheduledFileService.as(IoScheduler.IoClass.BACKGROUND);
+
+    // 占满并发，后台写入先到达，前台读取后到达
+    scheduler.acquire(IoScheduler.IoClass.WRITE);
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    try {
+      Future<Path> stored =
+        executorService.submit(() -> bulkFileService.storeFileUsingDate(content, null, "bin"));
+      while (0 == scheduler.queued(IoScheduler.IoClass.BACKGROUND)) {
+        TimeUnit.MILLISECONDS.sleep(1);
+      }
+      Future<ByteBuffer> read = executorService.submit(() -> scheduledFileService.read(path));
+      while (0 == scheduler.queued(IoScheduler.IoClass.INTERACTIVE)) {
+        TimeUnit.MILLISECONDS.sleep(1);
+      }
+
+      scheduler.release(IoScheduler.IoClass.WRITE);
+      Assert.assertEquals(read.get(), content);
+      Assert.assertEquals(scheduledFileService.read(stored.get()), content);
+    } finally {
+      executorService.shutdown();
+    }
+    Assert.assertEquals(executed, Arrays.asList("read", "store", "read"));
+    Assert.assertEquals(scheduler.inFlight(IoScheduler.IoClass.INTERACTIVE), 0);
+  }
+
+  @Test(timeOut = 20000)
+  public void backgroundNotStarvedByInteractive() throws Exception {
+    IoScheduler scheduler = new IoScheduler(1);
+    List<IoScheduler.IoClass> admitted = Collections.synchronizedList(new ArrayList<>());
+    int interactiveCount = IoScheduler.MAX_BYPASSES + 4;
+
+    // 占满并发，后台先排队，之后持续有前台排队
+    scheduler.acquire(IoScheduler.IoClass.INTERACTIVE);
+    ExecutorService executorService = Executors.newFixedThreadPool(interactiveCount + 1);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      futures.add(executorService.submit(() -> {
+        scheduler.acquire(IoScheduler.IoClass.BACKGROUND);
+        admitted.add(IoScheduler.IoClass.BACKGROUND);
+        scheduler.release(IoScheduler.IoClass.BACKGROUND);
+        return null;
+      }));
+      while (0 == scheduler.queued(IoScheduler.IoClass.BACKGROUND)) {
+        TimeUnit.MILLISECONDS.sleep(1);
+      }
+      for (int i = 0; i < interactiveCount; i++) {
+        futures.add(executorService.submit(() -> {
+          scheduler.acquire(IoScheduler.IoClass.INTERACTIVE);
+          admitted.add(IoScheduler.IoClass.INTERACTIVE);
+          scheduler.release(IoScheduler.IoClass.INTERACTIVE);
+          return null;
+        }));
+      }
+      while (interactiveCount > scheduler.queued(IoScheduler.IoClass.INTERACTIVE)) {
+        TimeUnit.MILLISECONDS.sleep(1);
+      }
+
+      scheduler.release(IoScheduler.IoClass.INTERACTIVE);
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executorService.shutdown();
+    }
+    Assert.assertEquals(admitted.indexOf(IoScheduler.IoClass.BACKGROUND),
+      IoScheduler.MAX_BYPASSES);
+  }
+
+  @Test(timeOut = 20000)
+  public void throttledStreamingStoreReleasesSlot() throws Exception {
+    Path path = fileService.storeFileUsingDate(content, null, "bin");
+    IoScheduler scheduler = new IoScheduler(2).limit(IoScheduler.IoClass.BACKGROUND, 2,
+      Semaphores.newRateSemaphoreDuration(1, "PT1S"));
+    IoSchedulingFileService scheduledFileService =
+      new IoSchedulingFileService(fileService, scheduler);
+    FileService bulkFileService = scheduledFileService.as(IoScheduler.IoClass.BACKGROUND);
+
+    // 两个后台流式写入各两个64KB的许可，限速期间占满并发时前台读取会等待
+    byte[] bulkContent = RandomUtils.nextBytes(128 * 1024);
+    AtomicInteger chunks = new AtomicInteger();
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    try {
+      List<Future<Path>> stored = new ArrayList<>();
+      for (int i = 0; i < 2; i++) {
+        ByteBuffer source = ByteBuffer.wrap(bulkContent);
+        stored.add(executorService.submit(() -> bulkFileService.storeFileUsingDate(
+          new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) {
+              if (!source.hasRemaining()) {
+                return -1;
+              }
+              int length = Math.min(dst.remaining(), source.remaining());
+              ByteBuffer chunk = source.duplicate();
+              chunk.limit(chunk.position() + length);
+              source.position(chunk.limit());
+              dst.put(chunk);
+              chunks.incrementAndGet();
+              return length;
+            }
+
+            @Override
+            public boolean isOpen() {
+              return true;
+            }
+
+            @Override
+            public void close() {
+            }
+          }, null, "bin")));
+      }
+      while (2 > chunks.get()) {
+        TimeUnit.MILLISECONDS.sleep(1);
+      }
+      TimeUnit.MILLISECONDS.sleep(50);
+
+      long start = System.nanoTime();
+      Assert.assertEquals(scheduledFileService.read(path), content);
+      Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500,
+        "interactive read waited for throttled background stores");
+
+      for (Future<Path> future : stored) {
+        Assert.assertEquals(fileService.read(future.get()), ByteBuffer.wrap(bulkContent));
+      }
+    } finally {
+      executorService.shutdown();
+    }
+    Assert.assertEquals(scheduler.inFlight(IoScheduler.IoClass.BACKGROUND), 0);
+  }
 }
@@ -0,0 +1,70 @@
+package org.easyweb4j.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class DirectBufferPoolTest {
+
+  @Test
+  public void acquireAndRelease() {
+    DirectBufferPool pool = new DirectBufferPool(64 * 1024, 1024 * 1024, false);
+
+    ByteBuffer buffer = pool.acquire(5000);
+    Assert.assertTrue(buffer.isDirect());
+    Assert.assertEquals(buffer.capacity(), 8192);
+    Assert.assertEquals(buffer.remaining(), 5000);
+
+    // 线程本地缓存优先
+    pool.release(buffer);
+    Assert.assertSame(pool.acquire(6000), buffer);
+    Assert.assertEquals(pool.pooledBytes(), 0);
+
+    ByteBuffer other = pool.acquire(8192);
+    Assert.assertNotSame(other, buffer);
+    pool.release(buffer);
+    pool.release(other);
+    Assert.assertEquals(pool.pooledBytes(), 8192);
+
+    // 超过最大级别的不入池
+    ByteBuffer large = pool.acquire(100 * 1024);
+    Assert.assertEquals(large.capacity(), 100 * 1024);
+    pool.release(large);
+    Assert.assertEquals(pool.pooledBytes(), 8192);
+  }
+
+  @Test
+  public void boundedPooledBytes() {
+    DirectBufferPool pool = new DirectBufferPool(4096, 8192, false);
+    ByteBuffer[] buffers = new ByteBuffer[5];
+    for (int i = 0; i < buffers.length; i++) {
+      buffers[i] = pool.acquire(4096);
+    }
+    for (ByteBuffer buffer : buffers) {
+      pool.release(buffer);
+    }
+    Assert.assertEquals(pool.pooledBytes(), 8192);
+  }
+
+  @Test
+  public void detectLeaks() throws InterruptedException {
+    DirectBufferPool pool = new DirectBufferPool(4096, 8192, true);
+
+    ByteBuffer buffer = pool.acquire(100);
+    pool.release(buffer);
+    try {
+      pool.release(buffer);
+      Assert.fail("expected double release");
+    } catch (IllegalStateException e) {
+      Assert.assertTrue(e.getMessage().startsWith("buffer not acquired"));
+    }
+
+    pool.acquire(100);
+    for (int i = 0; i < 100 && 0 == pool.leakCount(); i++) {
+      System.gc();
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    Assert.assertEquals(pool.leakCount(), 1);
+  }
+}